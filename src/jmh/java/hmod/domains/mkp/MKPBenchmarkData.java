@@ -0,0 +1,39 @@
+package hmod.domains.mkp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import optefx.loader.Module;
+import optefx.loader.ModuleLoader;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+final class MKPBenchmarkData
+{
+    private MKPBenchmarkData(){}
+    
+    public static String writeInstanceFile(int itemsCount, int resourcesCount, long seed) throws IOException
+    {
+        File file = File.createTempFile("mkp-bench-" + itemsCount + "x" + resourcesCount + "-", ".txt");
+        file.deleteOnExit();
+        
+        try(OutputStream output = new FileOutputStream(file))
+        {
+            new MKPInstanceGenerator(itemsCount, resourcesCount, 0.5, seed).writeText(output, 1);
+        }
+        
+        return file.getAbsolutePath();
+    }
+    
+    public static Module loadModule(String instanceFile)
+    {
+        return new ModuleLoader().
+            load(MKPDomain.class).
+            setParameter(MKPDomain.FILL_METHOD, MKPDomain.GREEDY_FILL).
+            setParameter(MKPDomain.INSTANCE, instanceFile + ":0").
+            getModule();
+    }
+}
@@ -0,0 +1,28 @@
+package hmod.domains.mkp;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the MKP benchmarks reporting throughput together with the allocation
+ * rate of the GC profiler. An optional argument filters the benchmarks by a
+ * regular expression.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPBenchmarks
+{
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().
+            include(args.length > 0 ? args[0] : "hmod\\.domains\\.mkp\\..*Benchmark").
+            mode(Mode.Throughput).
+            addProfiler(GCProfiler.class).
+            forks(1).
+            build()
+        ).run();
+    }
+}
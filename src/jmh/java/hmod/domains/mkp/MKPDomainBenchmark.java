@@ -0,0 +1,115 @@
+package hmod.domains.mkp;
+
+import static hmod.core.FlowchartFactory.*;
+import hmod.core.Statement;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import optefx.loader.Module;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MKPDomainBenchmark
+{
+    @Param({ "100", "500", "2500" })
+    public int items;
+    
+    @Param({ "5", "30" })
+    public int resources;
+    
+    private SolutionBuilderHandler builder;
+    private MKPSolution filledSolution;
+    private Statement greedyFill;
+    private Statement randomFill;
+    private Statement flowchartGreedyFill;
+    private Statement flowchartRandomFill;
+    private Statement greedyRemove;
+    private Statement randomRemove;
+    
+    @Setup
+    public void setup() throws IOException
+    {
+        Module mod = MKPBenchmarkData.loadModule(MKPBenchmarkData.writeInstanceFile(items, resources, 1L));
+        MKPDomain domain = mod.getInstance(MKPDomain.class);
+        builder = mod.getInstance(SolutionBuilderHandler.class);
+        
+        greedyFill = block(builder::clear, domain.fillMethod(MKPDomain.GREEDY_FILL));
+        randomFill = block(builder::clear, domain.fillMethod(MKPDomain.RANDOM_FILL));
+        flowchartGreedyFill = block(builder::clear, domain.fillMethod(MKPOperators::selectMostProfitableItemInList));
+        flowchartRandomFill = block(builder::clear, domain.fillMethod(MKPOperators::selectRandomItemInList));
+        greedyRemove = domain.multiRemove(domain.removeMethod(MKPDomain.REMOVE_GREEDY), 0.5, false);
+        randomRemove = domain.multiRemove(domain.removeMethod(MKPDomain.REMOVE_RANDOM), 0.5, false);
+        
+        run(greedyFill);
+        filledSolution = builder.build();
+    }
+    
+    /**
+     * Reloads the filled build before each removal, which the fill benchmarks
+     * do not need since they clear the builder themselves.
+     */
+    @State(Scope.Thread)
+    public static class FilledBuild
+    {
+        @Setup(Level.Invocation)
+        public void restoreFilledSolution(MKPDomainBenchmark benchmark)
+        {
+            benchmark.builder.importSolution(benchmark.filledSolution);
+        }
+    }
+    
+    @Benchmark
+    public int greedyFill()
+    {
+        run(greedyFill);
+        return builder.getIncludedCount();
+    }
+    
+    @Benchmark
+    public int randomFill()
+    {
+        run(randomFill);
+        return builder.getIncludedCount();
+    }
+    
+    @Benchmark
+    public int flowchartGreedyFill()
+    {
+        run(flowchartGreedyFill);
+        return builder.getIncludedCount();
+    }
+    
+    @Benchmark
+    public int flowchartRandomFill()
+    {
+        run(flowchartRandomFill);
+        return builder.getIncludedCount();
+    }
+    
+    @Benchmark
+    public int multiRemoveGreedy(FilledBuild filled)
+    {
+        run(greedyRemove);
+        return builder.getIncludedCount();
+    }
+    
+    @Benchmark
+    public int multiRemoveRandom(FilledBuild filled)
+    {
+        run(randomRemove);
+        return builder.getIncludedCount();
+    }
+}
@@ -0,0 +1,42 @@
+package hmod.domains.mkp;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MKPParserBenchmark
+{
+    @Param({ "100", "500", "2500" })
+    public int items;
+    
+    @Param({ "5", "30" })
+    public int resources;
+    
+    private String file;
+    
+    @Setup
+    public void setup() throws IOException
+    {
+        file = MKPBenchmarkData.writeInstanceFile(items, resources, 1L);
+    }
+    
+    @Benchmark
+    public MKPProblemInstance[] parse() throws IOException
+    {
+        return new MKPParser().parse(file);
+    }
+}
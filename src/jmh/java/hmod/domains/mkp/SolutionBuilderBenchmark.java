@@ -0,0 +1,74 @@
+package hmod.domains.mkp;
+
+import static hmod.core.FlowchartFactory.*;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import optefx.loader.Module;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SolutionBuilderBenchmark
+{
+    @Param({ "100", "500", "2500" })
+    public int items;
+    
+    @Param({ "5", "30" })
+    public int resources;
+    
+    private SolutionBuilderHandler builder;
+    private Item[] allItems;
+    private int nextItem;
+    private MKPSolution solution;
+    private MKPSolution sameSolution;
+    
+    @Setup
+    public void setup() throws IOException
+    {
+        Module mod = MKPBenchmarkData.loadModule(MKPBenchmarkData.writeInstanceFile(items, resources, 1L));
+        MKPDomain domain = mod.getInstance(MKPDomain.class);
+        ProblemInstanceHandler instance = mod.getInstance(ProblemInstanceHandler.class);
+        builder = mod.getInstance(SolutionBuilderHandler.class);
+        
+        run(builder::clear, domain.fillMethod(MKPDomain.RANDOM_FILL));
+        solution = builder.build();
+        sameSolution = builder.build();
+        allItems = new Item[instance.getItemsCount()];
+        
+        for(int i = 0; i < allItems.length; i++)
+            allItems[i] = instance.getItem(i);
+    }
+    
+    @Benchmark
+    public boolean isIncludeFeasible()
+    {
+        Item item = allItems[nextItem];
+        nextItem = (nextItem + 1) % allItems.length;
+        
+        return builder.isIncludeFeasible(item);
+    }
+    
+    @Benchmark
+    public MKPSolution build()
+    {
+        return builder.build();
+    }
+    
+    @Benchmark
+    public boolean sameAs()
+    {
+        return solution.sameAs(sameSolution);
+    }
+}
@@ -0,0 +1,175 @@
+package hmod.domains.mkp;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Base of the array-backed instances, holding the item profits in a plain 
+ * array indexed by id. Subclasses define the storage of the weights.
+ * <p>
+ * {@link Item} objects are flyweight handles, only materialized (once per id)
+ * when requested through {@link #getItem(int)}; the solvers work with the ids.
+ * 
+ * @author Enrique Urra C.
+ */
+abstract class ArrayProblemInstance implements MKPProblemInstance, IndexedWeights
+{
+    /**
+     * Fraction of nonzero weights below which {@link #create} stores the 
+     * weights in compressed sparse rows.
+     */
+    public static final double SPARSE_DENSITY_THRESHOLD = 0.3;
+    
+    private final int number;
+    private final int[] profits;
+    private final AtomicReferenceArray<Item> items;
+    private final Resource[] resources;
+    private volatile long[] zobristKeys;
+
+    protected ArrayProblemInstance(int number, int[] profits, int[] capacities)
+    {
+        for(int i = 0; i < profits.length; i++)
+        {
+            if(profits[i] < 0)
+                throw new IllegalArgumentException("Negative profit for item " + i);
+        }
+        
+        this.number = number;
+        this.profits = profits.clone();
+        this.items = new AtomicReferenceArray<>(profits.length);
+        this.resources = new Resource[capacities.length];
+        
+        for(int i = 0; i < resources.length; i++)
+            resources[i] = new Resource(i, capacities[i]);
+    }
+    
+    /**
+     * Creates a dense or a sparse instance depending on the density of the 
+     * provided item-major weights matrix.
+     */
+    public static ArrayProblemInstance create(int number, int[] profits, int[] capacities, int[] weights)
+    {
+        if(weights.length != profits.length * capacities.length)
+            throw new IllegalArgumentException("Wrong weights matrix size: " + weights.length);
+        
+        long nonZeros = 0;
+        
+        for(int i = 0; i < weights.length; i++)
+        {
+            if(weights[i] != 0)
+                nonZeros++;
+        }
+        
+        if(nonZeros < SPARSE_DENSITY_THRESHOLD * weights.length)
+            return SparseProblemInstance.fromDense(number, profits, capacities, weights);
+        
+        return new DenseProblemInstance(number, profits, capacities, weights);
+    }
+
+    @Override
+    public int getNumber()
+    {
+        return number;
+    }
+
+    @Override
+    public int getItemsCount()
+    {
+        return profits.length;
+    }
+
+    @Override
+    public int getResourcesCount()
+    {
+        return resources.length;
+    }
+
+    @Override
+    public Item getItem(int itemId)
+    {
+        if(itemId < 0 || itemId >= profits.length)
+            throw new IllegalArgumentException("Wrong item index: " + itemId);
+        
+        Item item = items.get(itemId);
+        
+        if(item == null)
+        {
+            item = new Item(itemId, profits[itemId]);
+            
+            // Another thread may have materialized it first; its handle wins
+            if(!items.compareAndSet(itemId, null, item))
+                item = items.get(itemId);
+        }
+        
+        return item;
+    }
+
+    @Override
+    public int getProfit(int itemId)
+    {
+        return profits[itemId];
+    }
+
+    @Override
+    public Resource getResource(int resourceId)
+    {
+        if(resourceId < 0 || resourceId >= resources.length)
+            throw new IllegalArgumentException("Wrong resource index: " + resourceId);
+        
+        return resources[resourceId];
+    }
+
+    @Override
+    public boolean itemExists(Item item)
+    {
+        int id = item.getId();
+        return id < profits.length && items.get(id) == item;
+    }
+
+    @Override
+    public boolean resourceExists(Resource res)
+    {
+        int id = res.getId();
+        return id < resources.length && resources[id] == res;
+    }
+
+    @Override
+    public void checkItem(Item item) throws IllegalArgumentException
+    {
+        if(!itemExists(item))
+            throw new IllegalArgumentException("The item do not belongs to the problem instance");
+    }
+
+    @Override
+    public void checkResource(Resource res) throws IllegalArgumentException
+    {
+        if(!resourceExists(res))
+            throw new IllegalArgumentException("The resource do not belongs to the problem instance");
+    }
+
+    @Override
+    public int getWeight(Item item, Resource resource)
+    {
+        if(!itemExists(item))
+            throw new IllegalArgumentException("The item '" + item.getId() + "' do not belongs to the instance.");
+
+        if(!resourceExists(resource))
+            throw new IllegalArgumentException("The resource '" + resource.getId() + "' do not belongs to the instance.");
+        
+        return getWeight(item.getId(), resource.getId());
+    }
+
+    /**
+     * The keys are generated on first use, since the weights of the 
+     * subclasses are not available yet in this constructor.
+     */
+    @Override
+    public long getZobristKey(int itemId)
+    {
+        long[] curr = zobristKeys;
+        
+        if(curr == null)
+            zobristKeys = curr = HashUtils.zobristKeys(getFingerprint(), profits.length);
+        
+        return curr[itemId];
+    }
+}
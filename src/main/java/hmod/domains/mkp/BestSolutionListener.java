@@ -0,0 +1,11 @@
+package hmod.domains.mkp;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+@FunctionalInterface
+public interface BestSolutionListener
+{
+    void bestSolutionImproved(MKPSolution solution, long timestamp);
+}
@@ -0,0 +1,146 @@
+package hmod.domains.mkp;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free tracker of the best solution found so far, safe to share between
+ * several workers. Offers that do not improve the incumbent only perform a
+ * volatile read, so the tracker can be hit by many threads at the same time.
+ * Listeners are notified under a lock that is only taken on improvements, 
+ * in increasing order of profit: an improvement that is overtaken by a 
+ * better one before being notified is not notified, so the last notified 
+ * solution is always the incumbent.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class BestSolutionTracker
+{
+    private static final class Incumbent
+    {
+        private final int profit;
+        private final MKPSolution solution;
+        private final long timestamp;
+
+        public Incumbent(int profit, MKPSolution solution, long timestamp)
+        {
+            this.profit = profit;
+            this.solution = solution;
+            this.timestamp = timestamp;
+        }
+    }
+    
+    private static final Incumbent NONE = new Incumbent(Integer.MIN_VALUE, null, 0);
+    
+    private final AtomicReference<Incumbent> incumbent = new AtomicReference<>(NONE);
+    private final CopyOnWriteArrayList<BestSolutionListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object notificationLock = new Object();
+    private Incumbent notified = NONE;
+    private final long creationTime = System.nanoTime();
+
+    public void addListener(BestSolutionListener listener)
+    {
+        if(listener == null)
+            throw new NullPointerException("Null listener");
+        
+        listeners.add(listener);
+    }
+    
+    public void removeListener(BestSolutionListener listener)
+    {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Offers a solution as a new incumbent. Listeners are notified by the 
+     * thread whose offer succeeds, with the {@link System#nanoTime()} value 
+     * of the improvement, unless a better one has been notified meanwhile.
+     * @param solution the candidate solution
+     * @return true if the solution became the new best one
+     */
+    public boolean offer(MKPSolution solution)
+    {
+        if(solution == null)
+            throw new NullPointerException("Null solution");
+        
+        int profit = solution.getTotalProfit();
+        Incumbent curr = incumbent.get();
+        
+        if(curr.profit >= profit)
+            return false;
+        
+        Incumbent next = new Incumbent(profit, solution, System.nanoTime());
+        
+        while(curr.profit < profit)
+        {
+            if(incumbent.compareAndSet(curr, next))
+            {
+                notifyListeners(next);
+                return true;
+            }
+            
+            curr = incumbent.get();
+        }
+        
+        return false;
+    }
+    
+    private void notifyListeners(Incumbent improvement)
+    {
+        synchronized(notificationLock)
+        {
+            if(notified.profit >= improvement.profit)
+                return;
+            
+            notified = improvement;
+            
+            for(BestSolutionListener listener : listeners)
+                listener.bestSolutionImproved(improvement.solution, improvement.timestamp);
+        }
+    }
+    
+    /**
+     * Checks, with a single volatile read, if the incumbent is feasible and 
+     * reaches a target profit.
+     */
+    public boolean isProfitReached(int targetProfit)
+    {
+        Incumbent curr = incumbent.get();
+        return curr.profit >= targetProfit && curr != NONE && curr.solution.isFeasible();
+    }
+    
+    public boolean isBestSolutionSet()
+    {
+        return incumbent.get() != NONE;
+    }
+    
+    public int getBestProfit()
+    {
+        return incumbent.get().profit;
+    }
+    
+    public MKPSolution getBestSolution() throws IllegalStateException
+    {
+        Incumbent curr = incumbent.get();
+        
+        if(curr == NONE)
+            throw new IllegalStateException("No best solution has been set");
+        
+        return curr.solution;
+    }
+    
+    public long getBestSolutionTimestamp() throws IllegalStateException
+    {
+        Incumbent curr = incumbent.get();
+        
+        if(curr == NONE)
+            throw new IllegalStateException("No best solution has been set");
+        
+        return curr.timestamp;
+    }
+
+    public long getCreationTime()
+    {
+        return creationTime;
+    }
+}
@@ -0,0 +1,146 @@
+package hmod.domains.mkp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Anytime convergence trace of a run, stored in preallocated primitive arrays
+ * used as a ring buffer. Recording an event allocates nothing and performs no
+ * output; the trace is exported once the run has finished. When the buffer is
+ * full the oldest events are overwritten.
+ * <p>
+ * Times are measured from {@link #start()}, or from the first event if the
+ * trace was not started explicitly, so the setup before the run is excluded.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class ConvergenceTrace
+{
+    private long startTime;
+    private boolean started;
+    private final long[] times;
+    private final long[] iterations;
+    private final int[] profits;
+    private final boolean[] feasible;
+    private final double[] gaps;
+    private long recorded;
+
+    public ConvergenceTrace(int capacity)
+    {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Wrong trace capacity: " + capacity);
+        
+        this.times = new long[capacity];
+        this.iterations = new long[capacity];
+        this.profits = new int[capacity];
+        this.feasible = new boolean[capacity];
+        this.gaps = new double[capacity];
+    }
+    
+    /**
+     * Starts the clock of the trace, unless it has already been started by a
+     * previous call or by the first event.
+     */
+    public synchronized void start()
+    {
+        if(!started)
+        {
+            startTime = System.nanoTime();
+            started = true;
+        }
+    }
+    
+    public synchronized boolean isStarted()
+    {
+        return started;
+    }
+    
+    public synchronized void record(long nanoTime, long iteration, int profit, boolean isFeasible, double gap)
+    {
+        if(!started)
+        {
+            startTime = nanoTime;
+            started = true;
+        }
+        
+        int pos = (int)(recorded % times.length);
+        times[pos] = nanoTime - startTime;
+        iterations[pos] = iteration;
+        profits[pos] = profit;
+        feasible[pos] = isFeasible;
+        gaps[pos] = gap;
+        recorded++;
+    }
+    
+    public void record(long nanoTime, long iteration, MKPSolution solution)
+    {
+        record(nanoTime, iteration, solution.getTotalProfit(), solution.isFeasible(), solution.getGap());
+    }
+
+    public int getCapacity()
+    {
+        return times.length;
+    }
+    
+    public synchronized int getSize()
+    {
+        return (int)Math.min(recorded, times.length);
+    }
+    
+    public synchronized long getRecordedCount()
+    {
+        return recorded;
+    }
+    
+    private int firstPosition()
+    {
+        return recorded <= times.length ? 0 : (int)(recorded % times.length);
+    }
+    
+    /**
+     * Writes the retained events, oldest first, as CSV with the elapsed time 
+     * in nanoseconds since the start of the trace.
+     */
+    public synchronized void writeCsv(Writer writer) throws IOException
+    {
+        int size = getSize();
+        int first = firstPosition();
+        writer.write("time_ns,iteration,profit,feasible,gap\n");
+        
+        for(int i = 0; i < size; i++)
+        {
+            int pos = (first + i) % times.length;
+            writer.write(times[pos] + "," + iterations[pos] + "," + profits[pos] + "," + feasible[pos] + "," + gaps[pos] + "\n");
+        }
+        
+        writer.flush();
+    }
+    
+    /**
+     * Writes the retained events, oldest first, as a big-endian int count 
+     * followed by (long time, long iteration, int profit, byte feasible, 
+     * double gap) records.
+     */
+    public synchronized void writeBinary(OutputStream output) throws IOException
+    {
+        int size = getSize();
+        int first = firstPosition();
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(output));
+        dos.writeInt(size);
+        
+        for(int i = 0; i < size; i++)
+        {
+            int pos = (first + i) % times.length;
+            dos.writeLong(times[pos]);
+            dos.writeLong(iterations[pos]);
+            dos.writeInt(profits[pos]);
+            dos.writeByte(feasible[pos] ? 1 : 0);
+            dos.writeDouble(gaps[pos]);
+        }
+        
+        dos.flush();
+    }
+}
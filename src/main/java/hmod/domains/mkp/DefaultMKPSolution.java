@@ -1,33 +1,77 @@
 
 package hmod.domains.mkp;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
- *
+ * Solution stored as the ids of its items plus a bitset for membership 
+ * queries; the {@link Item} objects are only materialized by 
+ * {@link #getItems()}.
+ * 
  * @author Enrique Urra C.
  */
 class DefaultMKPSolution implements MKPSolution
 {
     private final int totalProfit;
     private final int constraintViolation;
-    private final Item[] items;
+    private final int[] itemIds;
+    private final long[] itemBits;
     private final int[] resourceUsage;
     private final MKPProblemInstance instance;
-    private final Set<Integer> itemIds;
+    private final long hash;
 
     public DefaultMKPSolution(MKPProblemInstance instance, int totalProfit, int constraintViolation, Item[] items, int[] resourceUsage)
+    {
+        this(instance, totalProfit, constraintViolation, items, resourceUsage, HashUtils.zobristHash(instance, items));
+    }
+    
+    public DefaultMKPSolution(MKPProblemInstance instance, int totalProfit, int constraintViolation, Item[] items, int[] resourceUsage, long hash)
+    {
+        this(instance, totalProfit, constraintViolation, idsOf(items), resourceUsage, hash);
+    }
+    
+    DefaultMKPSolution(MKPProblemInstance instance, int totalProfit, int constraintViolation, int[] itemIds, int[] resourceUsage, long hash)
     {
         this.instance = instance;
         this.totalProfit = totalProfit;
         this.constraintViolation = constraintViolation;
-        this.items = items;
+        this.itemIds = itemIds;
         this.resourceUsage = resourceUsage;
-        this.itemIds = new HashSet<>(items.length);
+        this.hash = hash;
+        
+        int maxId = -1;
+        
+        for(int i = 0; i < itemIds.length; i++)
+            maxId = Math.max(maxId, itemIds[i]);
+        
+        this.itemBits = new long[(maxId + 64) >>> 6];
+        
+        for(int i = 0; i < itemIds.length; i++)
+            itemBits[itemIds[i] >>> 6] |= 1L << itemIds[i];
+    }
+    
+    private static int[] idsOf(Item[] items)
+    {
+        int[] ids = new int[items.length];
         
         for(int i = 0; i < items.length; i++)
-            itemIds.add(items[i].getId());
+            ids[i] = items[i].getId();
+        
+        return ids;
+    }
+
+    /**
+     * Converts usages accumulated as longs, clamping the ones over the int 
+     * range, which can only belong to infeasible solutions.
+     */
+    static int[] saturatedUsage(long[] usage)
+    {
+        int[] result = new int[usage.length];
+        
+        for(int i = 0; i < usage.length; i++)
+            result[i] = (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, usage[i]));
+        
+        return result;
     }
 
     @Override
@@ -40,10 +84,18 @@ class DefaultMKPSolution implements MKPSolution
     @Override
     public Item[] getItems()
     {
-        Item[] copy = new Item[items.length];
-        System.arraycopy(items, 0, copy, 0, copy.length);
+        Item[] items = new Item[itemIds.length];
         
-        return copy;
+        for(int i = 0; i < items.length; i++)
+            items[i] = instance.getItem(itemIds[i]);
+        
+        return items;
+    }
+
+    @Override
+    public int[] getItemIds()
+    {
+        return itemIds.clone();
     }
     
     @Override
@@ -70,30 +122,39 @@ class DefaultMKPSolution implements MKPSolution
     @Override
     public boolean hasItem(int id)
     {
-        return itemIds.contains(id);
+        return id >= 0 && (id >>> 6) < itemBits.length && (itemBits[id >>> 6] & (1L << id)) != 0;
     }
 
     @Override
     public int getItemsCount()
     {
-        return items.length;
+        return itemIds.length;
     }
     
     @Override
     public boolean sameAs(MKPSolution other)
     {
-        if(other.getItemsCount() != getItemsCount())
+        if(other.getItemsCount() != getItemsCount() || other.getHash() != hash)
             return false;
         
-        for(Integer itemId : itemIds)
+        if(other instanceof DefaultMKPSolution)
+            return Arrays.equals(itemBits, ((DefaultMKPSolution)other).itemBits);
+        
+        for(int i = 0; i < itemIds.length; i++)
         {
-            if(!other.hasItem(itemId))
+            if(!other.hasItem(itemIds[i]))
                 return false;
         }
         
         return true;
     }
 
+    @Override
+    public long getHash()
+    {
+        return hash;
+    }
+
     @Override
     public String toString()
     {
@@ -105,8 +166,8 @@ class DefaultMKPSolution implements MKPSolution
         sb.append("\n").append("Feasible: ").append(isFeasible()).append("\n");
         sb.append("Item list: ");
         
-        for(int i = 0; i < items.length; i++)
-            sb.append(items[i].getId()).append(" ");
+        for(int i = 0; i < itemIds.length; i++)
+            sb.append(itemIds[i]).append(" ");
         
         sb.append("\nResource usage: ");
         
@@ -0,0 +1,32 @@
+package hmod.domains.mkp;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+final class DenseProblemInstance extends ArrayProblemInstance
+{
+    private final int resourcesCount;
+    private final int[] weights;
+
+    /**
+     * @param weights item-major matrix, the weight of item i over resource r is
+     * at {@code i * resourcesCount + r}
+     */
+    public DenseProblemInstance(int number, int[] profits, int[] capacities, int[] weights)
+    {
+        super(number, profits, capacities);
+        
+        if(weights.length != profits.length * capacities.length)
+            throw new IllegalArgumentException("Wrong weights matrix size: " + weights.length);
+        
+        this.resourcesCount = capacities.length;
+        this.weights = weights;
+    }
+
+    @Override
+    public int getWeight(int itemId, int resourceId)
+    {
+        return weights[itemId * resourcesCount + resourceId];
+    }
+}
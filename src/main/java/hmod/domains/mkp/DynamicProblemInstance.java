@@ -0,0 +1,448 @@
+package hmod.domains.mkp;
+
+import java.util.Arrays;
+
+/**
+ * Mutable instance layer for online solving, where capacities change and 
+ * items are added or retired between solves. Item ids are stable: new items
+ * get the next id and retired items are kept as tombstones, so solutions of
+ * previous versions remain meaningful. The derived data used by the solution
+ * builder (profit order, maximum profit, Zobrist keys) and the fingerprint 
+ * are updated incrementally on each change, and 
+ * {@link #repair(MKPSolution)} takes a previous solution to a feasible one 
+ * for the current data, without re-solving from scratch.
+ * <p>
+ * The profit order and the tombstones, which builders keep references to, 
+ * are replaced on each change instead of modified. The item, weight and 
+ * Zobrist key arrays are written in place when an item is added (and only 
+ * reallocated when they are full), but only past the previous items count,
+ * so existing entries never change. Builders copy the capacities, so they 
+ * keep a consistent view after a change until they are cleared, when they 
+ * take the current data. Changes must not run concurrently with any other 
+ * use of the instance.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class DynamicProblemInstance implements MKPProblemInstance, IndexedWeights
+{
+    private final int number;
+    private final int resourcesCount;
+    private final Resource[] resources;
+    private Item[] items;
+    private int itemsCount;
+    private int liveCount;
+    private int[] weights;
+    private long[] tombstones;
+    private long[] zobristKeys;
+    private final long zobristSeed;
+    private int[] profitOrder;
+    private long itemsHash;
+    private long resourcesHash;
+    private long version;
+
+    public DynamicProblemInstance(MKPProblemInstance base)
+    {
+        if(base == null)
+            throw new NullPointerException("Null base instance");
+        
+        IndexedWeights baseWeights = IndexedWeights.of(base);
+        this.number = base.getNumber();
+        this.resourcesCount = base.getResourcesCount();
+        this.resources = new Resource[resourcesCount];
+        this.itemsCount = base.getItemsCount();
+        this.liveCount = itemsCount;
+        this.items = new Item[Math.max(16, itemsCount)];
+        this.weights = new int[items.length * resourcesCount];
+        this.tombstones = new long[(items.length + 63) >>> 6];
+        this.zobristKeys = new long[items.length];
+        
+        for(int i = 0; i < resourcesCount; i++)
+        {
+            resources[i] = new Resource(i, base.getResource(i).getCapacity());
+            resourcesHash += HashUtils.resourceHash(resources[i]);
+        }
+        
+        for(int j = 0; j < itemsCount; j++)
+        {
+            items[j] = new Item(j, base.getItem(j).getProfit());
+            
+            for(int i = 0; i < resourcesCount; i++)
+                weights[j * resourcesCount + i] = baseWeights.getWeight(j, i);
+            
+            itemsHash += HashUtils.itemHash(this, items[j]);
+        }
+        
+        // The seed is fixed at construction, so the keys (and the hashes of 
+        // existing solutions) do not change when the data does
+        this.zobristSeed = getFingerprint();
+        
+        for(int j = 0; j < itemsCount; j++)
+            zobristKeys[j] = HashUtils.zobristKey(zobristSeed, j);
+        
+        long[] keys = new long[itemsCount];
+        
+        for(int j = 0; j < itemsCount; j++)
+            keys[j] = orderKey(items[j]);
+        
+        Arrays.sort(keys);
+        profitOrder = new int[itemsCount];
+        
+        for(int j = 0; j < itemsCount; j++)
+            profitOrder[j] = (int)keys[j];
+    }
+    
+    /**
+     * @return the dynamic instance backing the provided one, or null if it 
+     * is not dynamic
+     */
+    static DynamicProblemInstance of(MKPProblemInstance instance)
+    {
+        if(instance instanceof ProblemInstanceHandler)
+            instance = ((ProblemInstanceHandler)instance).getInstance();
+        
+        return instance instanceof DynamicProblemInstance ? (DynamicProblemInstance)instance : null;
+    }
+    
+    /**
+     * Sort key of the profit order: decreasing profit, ties by ascending id.
+     */
+    private static long orderKey(Item item)
+    {
+        return ((long)(Integer.MAX_VALUE - item.getProfit()) << 32) | item.getId();
+    }
+    
+    private int orderPosition(long key)
+    {
+        int low = 0;
+        int high = profitOrder.length;
+        
+        while(low < high)
+        {
+            int mid = (low + high) >>> 1;
+            
+            if(orderKey(items[profitOrder[mid]]) < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        
+        return low;
+    }
+    
+    private void checkItemId(int itemId)
+    {
+        if(itemId < 0 || itemId >= itemsCount)
+            throw new IllegalArgumentException("Wrong item index: " + itemId);
+    }
+    
+    public void updateCapacity(int resourceId, int capacity) throws IllegalArgumentException
+    {
+        Resource old = getResource(resourceId);
+        Resource updated = new Resource(resourceId, capacity);
+        resourcesHash += HashUtils.resourceHash(updated) - HashUtils.resourceHash(old);
+        resources[resourceId] = updated;
+        version++;
+    }
+    
+    /**
+     * Adds a new item, with the next id.
+     * @param itemWeights the weights of the item over each resource
+     * @return the new item
+     */
+    public Item addItem(int profit, int[] itemWeights) throws IllegalArgumentException
+    {
+        if(profit < 0)
+            throw new IllegalArgumentException("Negative profit: " + profit);
+        
+        if(itemWeights.length != resourcesCount)
+            throw new IllegalArgumentException("Wrong number of weights: " + itemWeights.length);
+        
+        for(int i = 0; i < resourcesCount; i++)
+        {
+            if(itemWeights[i] < 0)
+                throw new IllegalArgumentException("Negative weight for resource " + i);
+        }
+        
+        int id = itemsCount;
+        Item item = new Item(id, profit);
+        
+        if(id == items.length)
+        {
+            int newCapacity = items.length * 2;
+            items = Arrays.copyOf(items, newCapacity);
+            weights = Arrays.copyOf(weights, newCapacity * resourcesCount);
+            zobristKeys = Arrays.copyOf(zobristKeys, newCapacity);
+            tombstones = Arrays.copyOf(tombstones, (newCapacity + 63) >>> 6);
+        }
+        
+        items[id] = item;
+        System.arraycopy(itemWeights, 0, weights, id * resourcesCount, resourcesCount);
+        zobristKeys[id] = HashUtils.zobristKey(zobristSeed, id);
+        itemsCount++;
+        liveCount++;
+        itemsHash += HashUtils.itemHash(this, item);
+        
+        int pos = orderPosition(orderKey(item));
+        int[] order = new int[profitOrder.length + 1];
+        System.arraycopy(profitOrder, 0, order, 0, pos);
+        order[pos] = id;
+        System.arraycopy(profitOrder, pos, order, pos + 1, profitOrder.length - pos);
+        profitOrder = order;
+        version++;
+        
+        return item;
+    }
+    
+    /**
+     * Retires an item, which cannot be included in solutions anymore. Its id
+     * is not reused.
+     */
+    public void retireItem(int itemId) throws IllegalArgumentException
+    {
+        checkItemId(itemId);
+        
+        if(isRetired(itemId))
+            throw new IllegalArgumentException("The item " + itemId + " is already retired");
+        
+        Item item = items[itemId];
+        itemsHash -= HashUtils.itemHash(this, item);
+        tombstones = tombstones.clone();
+        tombstones[itemId >>> 6] |= 1L << itemId;
+        liveCount--;
+        
+        int pos = orderPosition(orderKey(item));
+        int[] order = new int[profitOrder.length - 1];
+        System.arraycopy(profitOrder, 0, order, 0, pos);
+        System.arraycopy(profitOrder, pos + 1, order, pos, order.length - pos);
+        profitOrder = order;
+        version++;
+    }
+    
+    public boolean isRetired(int itemId)
+    {
+        return (tombstones[itemId >>> 6] & (1L << itemId)) != 0;
+    }
+    
+    public int getLiveItemsCount()
+    {
+        return liveCount;
+    }
+    
+    /**
+     * @return a counter increased by each change
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+    
+    /**
+     * Takes a solution of this instance, possibly of a previous version, to a
+     * feasible solution of the current data. Retired items are dropped, then
+     * the least profitable items that use an over-capacity resource are 
+     * removed until the solution is feasible, and finally the free capacity 
+     * is filled greedily. Runs in O(n m), dominated by the greedy fill, which 
+     * checks every item of the profit order.
+     */
+    public MKPSolution repair(MKPSolution previous)
+    {
+        long[] kept = new long[(itemsCount + 63) >>> 6];
+        long[] usage = new long[resourcesCount];
+        int[] previousIds = previous.getItemIds();
+        
+        for(int k = 0; k < previousIds.length; k++)
+        {
+            int id = previousIds[k];
+            
+            if(id < itemsCount && !isRetired(id))
+            {
+                kept[id >>> 6] |= 1L << id;
+                
+                for(int i = 0, base = id * resourcesCount; i < resourcesCount; i++)
+                    usage[i] += weights[base + i];
+            }
+        }
+        
+        int violated = 0;
+        
+        for(int i = 0; i < resourcesCount; i++)
+        {
+            if(usage[i] > resources[i].getCapacity())
+                violated++;
+        }
+        
+        for(int k = profitOrder.length - 1; k >= 0 && violated > 0; k--)
+        {
+            int id = profitOrder[k];
+            
+            if((kept[id >>> 6] & (1L << id)) == 0)
+                continue;
+            
+            int base = id * resourcesCount;
+            boolean usesViolated = false;
+            
+            for(int i = 0; i < resourcesCount && !usesViolated; i++)
+                usesViolated = weights[base + i] > 0 && usage[i] > resources[i].getCapacity();
+            
+            if(!usesViolated)
+                continue;
+            
+            kept[id >>> 6] &= ~(1L << id);
+            
+            for(int i = 0; i < resourcesCount; i++)
+            {
+                boolean wasViolated = usage[i] > resources[i].getCapacity();
+                usage[i] -= weights[base + i];
+                
+                if(wasViolated && usage[i] <= resources[i].getCapacity())
+                    violated--;
+            }
+        }
+        
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(this);
+        
+        for(int w = 0; w < kept.length; w++)
+        {
+            long word = kept[w];
+            
+            while(word != 0)
+            {
+                builder.includeTrusted((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        
+        if(builder.getIncludedCount() < liveCount)
+            builder.fillGreedily();
+        
+        return builder.build();
+    }
+    
+    int[] getProfitOrder()
+    {
+        return profitOrder;
+    }
+    
+    long[] getTombstones()
+    {
+        return tombstones;
+    }
+    
+    long[] getZobristKeys()
+    {
+        return zobristKeys;
+    }
+    
+    int getMaxProfit()
+    {
+        return profitOrder.length == 0 ? 0 : items[profitOrder[0]].getProfit();
+    }
+
+    @Override
+    public int getNumber()
+    {
+        return number;
+    }
+
+    /**
+     * @return the number of item ids, including the retired items
+     */
+    @Override
+    public int getItemsCount()
+    {
+        return itemsCount;
+    }
+
+    @Override
+    public int getResourcesCount()
+    {
+        return resourcesCount;
+    }
+
+    @Override
+    public Item getItem(int itemId)
+    {
+        checkItemId(itemId);
+        return items[itemId];
+    }
+
+    @Override
+    public int getProfit(int itemId)
+    {
+        checkItemId(itemId);
+        return items[itemId].getProfit();
+    }
+
+    @Override
+    public Resource getResource(int resourceId)
+    {
+        if(resourceId < 0 || resourceId >= resourcesCount)
+            throw new IllegalArgumentException("Wrong resource index: " + resourceId);
+        
+        return resources[resourceId];
+    }
+
+    @Override
+    public boolean itemExists(Item item)
+    {
+        int id = item.getId();
+        return id < itemsCount && items[id] == item && !isRetired(id);
+    }
+
+    @Override
+    public boolean resourceExists(Resource res)
+    {
+        int id = res.getId();
+        return id < resourcesCount && resources[id] == res;
+    }
+
+    @Override
+    public void checkItem(Item item) throws IllegalArgumentException
+    {
+        if(!itemExists(item))
+            throw new IllegalArgumentException("The item do not belongs to the problem instance");
+    }
+
+    @Override
+    public void checkResource(Resource res) throws IllegalArgumentException
+    {
+        if(!resourceExists(res))
+            throw new IllegalArgumentException("The resource do not belongs to the problem instance");
+    }
+
+    @Override
+    public int getWeight(Item item, Resource resource)
+    {
+        int id = item.getId();
+        
+        if(id >= itemsCount || items[id] != item)
+            throw new IllegalArgumentException("The item '" + id + "' do not belongs to the instance.");
+
+        if(!resourceExists(resource))
+            throw new IllegalArgumentException("The resource '" + resource.getId() + "' do not belongs to the instance.");
+        
+        return weights[id * resourcesCount + resource.getId()];
+    }
+
+    @Override
+    public int getWeight(int itemId, int resourceId)
+    {
+        return weights[itemId * resourcesCount + resourceId];
+    }
+
+    @Override
+    public long getZobristKey(int itemId)
+    {
+        return zobristKeys[itemId];
+    }
+    
+    /**
+     * @return the fingerprint of the current data, maintained incrementally 
+     * from the terms of the live items and the resources
+     */
+    @Override
+    public long getFingerprint()
+    {
+        return HashUtils.combineFingerprint(liveCount, resourcesCount, itemsHash, resourcesHash);
+    }
+}
@@ -0,0 +1,127 @@
+package hmod.domains.mkp;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+final class HashUtils
+{
+    public static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long ZOBRIST_SEED = 0x5A0B81C7D3E2F469L;
+    
+    private HashUtils(){}
+    
+    /**
+     * SplitMix64 finalizer.
+     */
+    public static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * Order-independent hash of an instance, as the sum of one hash per item
+     * and one per resource. Adding, removing or changing a single item or 
+     * resource only needs its own term to be updated.
+     */
+    public static long fingerprint(MKPProblemInstance instance)
+    {
+        int itemsCount = instance.getItemsCount();
+        int resourcesCount = instance.getResourcesCount();
+        long itemsHash = 0;
+        long resourcesHash = 0;
+        
+        for(int i = 0; i < itemsCount; i++)
+            itemsHash += itemHash(instance, i);
+        
+        for(int i = 0; i < resourcesCount; i++)
+            resourcesHash += resourceHash(instance.getResource(i));
+        
+        return combineFingerprint(itemsCount, resourcesCount, itemsHash, resourcesHash);
+    }
+    
+    public static long itemHash(MKPProblemInstance instance, Item item)
+    {
+        return itemHash(instance, item.getId());
+    }
+    
+    static long itemHash(MKPProblemInstance instance, int itemId)
+    {
+        IndexedWeights weights = IndexedWeights.of(instance);
+        int resourcesCount = instance.getResourcesCount();
+        long hash = mix(itemId * GOLDEN_GAMMA + instance.getProfit(itemId));
+        
+        for(int i = 0; i < resourcesCount; i++)
+            hash = mix(hash + weights.getWeight(itemId, i));
+        
+        return hash;
+    }
+    
+    public static long resourceHash(Resource res)
+    {
+        return mix(~(res.getId() * GOLDEN_GAMMA) + res.getCapacity());
+    }
+    
+    /**
+     * Random key of an item for Zobrist hashing, where the hash of a set of 
+     * items is the XOR of their keys. The keys of an instance are generated
+     * from a seed derived from its fingerprint, so different instances get
+     * independent keys while every process loading the same data gets the 
+     * same ones.
+     */
+    public static long zobristKey(long instanceSeed, int itemId)
+    {
+        return mix(mix(itemId * GOLDEN_GAMMA + mix(instanceSeed ^ ZOBRIST_SEED)));
+    }
+    
+    public static long[] zobristKeys(long instanceSeed, int itemsCount)
+    {
+        long[] keys = new long[itemsCount];
+        
+        for(int i = 0; i < itemsCount; i++)
+            keys[i] = zobristKey(instanceSeed, i);
+        
+        return keys;
+    }
+    
+    public static long[] zobristKeys(MKPProblemInstance instance)
+    {
+        if(instance instanceof ProblemInstanceHandler)
+            return ((ProblemInstanceHandler)instance).getZobristKeys();
+        
+        int itemsCount = instance.getItemsCount();
+        long[] keys = new long[itemsCount];
+        
+        for(int i = 0; i < itemsCount; i++)
+            keys[i] = instance.getZobristKey(i);
+        
+        return keys;
+    }
+    
+    public static long zobristHash(MKPProblemInstance instance, Item[] items)
+    {
+        long hash = 0;
+        
+        for(int i = 0; i < items.length; i++)
+            hash ^= instance.getZobristKey(items[i].getId());
+        
+        return hash;
+    }
+    
+    public static long zobristHash(MKPProblemInstance instance, int[] itemIds)
+    {
+        long hash = 0;
+        
+        for(int i = 0; i < itemIds.length; i++)
+            hash ^= instance.getZobristKey(itemIds[i]);
+        
+        return hash;
+    }
+    
+    public static long combineFingerprint(int itemsCount, int resourcesCount, long itemsHash, long resourcesHash)
+    {
+        return mix(mix(mix(itemsCount * GOLDEN_GAMMA + resourcesCount) + itemsHash) + resourcesHash);
+    }
+}
@@ -0,0 +1,25 @@
+package hmod.domains.mkp;
+
+/**
+ * Unchecked, id-based weight lookup used by the internal operators, whose 
+ * items and resources have already been validated against the instance. The
+ * full checks remain on {@link MKPProblemInstance#getWeight(Item, Resource)}.
+ * 
+ * @author Enrique Urra C.
+ */
+@FunctionalInterface
+interface IndexedWeights
+{
+    int getWeight(int itemId, int resourceId);
+    
+    static IndexedWeights of(MKPProblemInstance instance)
+    {
+        if(instance instanceof ProblemInstanceHandler)
+            return ((ProblemInstanceHandler)instance).getIndexedWeights();
+        
+        if(instance instanceof IndexedWeights)
+            return (IndexedWeights)instance;
+        
+        return (itemId, resourceId) -> instance.getWeight(instance.getItem(itemId), instance.getResource(resourceId));
+    }
+}
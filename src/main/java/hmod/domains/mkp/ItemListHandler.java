@@ -1,18 +1,19 @@
-
 package hmod.domains.mkp;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /**
- *
+ * List of items stored by id, with a bitset for membership checks. 
+ * {@link Item} objects are materialized only when requested.
+ * 
  * @author Enrique Urra C.
  */
 public final class ItemListHandler
 {
     private final MKPProblemInstance problemInstance;
-    private final ArrayList<Item> list;
-    private final HashSet<Item> set;
+    private long[] members;
+    private int[] ids;
+    private int count;
 
     public ItemListHandler(MKPProblemInstance problemInstance)
     {
@@ -20,15 +21,20 @@ public final class ItemListHandler
             throw new NullPointerException("Null problem instance");
         
         this.problemInstance = problemInstance;
-        this.list = new ArrayList<>();
-        this.set = new HashSet<>();
+        this.members = new long[(problemInstance.getItemsCount() + 63) >>> 6];
+        this.ids = new int[16];
     }
 
     private void checkIndex(int index) throws IndexOutOfBoundsException
     {
-        if(index < 0 || index >= list.size())
+        if(index < 0 || index >= count)
             throw new IndexOutOfBoundsException("Wrong index: " + index);
     }
+    
+    private boolean contains(int id)
+    {
+        return id < (members.length << 6) && (members[id >>> 6] & (1L << id)) != 0;
+    }
 
     public void addItem(Item item)
     {
@@ -36,38 +42,81 @@ public final class ItemListHandler
             throw new NullPointerException("Null item");
         
         problemInstance.checkItem(item);        
-        list.add(item);
-        set.add(item);
+        addTrusted(item.getId());
+    }
+    
+    void addTrusted(Item item)
+    {
+        assert item != null && problemInstance.itemExists(item) : "Wrong trusted item " + item;
+        addTrusted(item.getId());
+    }
+    
+    void addTrusted(int id)
+    {
+        if(count == ids.length)
+            ids = Arrays.copyOf(ids, count * 2);
+        
+        if((id >>> 6) >= members.length)
+            members = Arrays.copyOf(members, (id >>> 6) + 1);
+        
+        ids[count++] = id;
+        members[id >>> 6] |= 1L << id;
     }
 
     public void removeItem(Item item) throws IllegalArgumentException
     {
-        if(!set.contains(item))
+        if(item == null || !problemInstance.itemExists(item))
+            throw new IllegalArgumentException("The specified item do not belongs to this list");
+        
+        removeId(item.getId());
+    }
+    
+    void removeId(int id) throws IllegalArgumentException
+    {
+        if(!contains(id))
             throw new IllegalArgumentException("The specified item do not belongs to this list");
         
-        list.remove(item);
-        set.remove(item);
+        int pos = 0;
+        
+        while(ids[pos] != id)
+            pos++;
+        
+        System.arraycopy(ids, pos + 1, ids, pos, count - pos - 1);
+        count--;
+        members[id >>> 6] &= ~(1L << id);
     }
 
     public Item getItemAt(int pos) throws IndexOutOfBoundsException
+    {
+        return problemInstance.getItem(getIdAt(pos));
+    }
+    
+    int getIdAt(int pos) throws IndexOutOfBoundsException
     {
         checkIndex(pos);
-        return list.get(pos);
+        return ids[pos];
+    }
+    
+    int getProfitAt(int pos) throws IndexOutOfBoundsException
+    {
+        return problemInstance.getProfit(getIdAt(pos));
     }
 
     public void clear()
     {
-        list.clear();
-        set.clear();
+        for(int i = 0; i < count; i++)
+            members[ids[i] >>> 6] = 0L;
+        
+        count = 0;
     }
 
     public boolean isEmpty()
     {
-        return list.isEmpty();
+        return count == 0;
     }
 
     public int getItemCount()
     {
-        return list.size();
+        return count;
     }
 }
@@ -0,0 +1,289 @@
+package hmod.domains.mkp;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import optefx.util.random.RandomTool;
+
+/**
+ * Adaptive large neighbourhood search over a solution builder. Each iteration
+ * removes a fraction of the included items with one of the destroy operators
+ * and refills the solution with one of the fill methods; the new state is
+ * kept if it is not worse, and otherwise rolled back through the builder 
+ * journal, in time proportional to the number of changed items.
+ * <p>
+ * Operators are chosen by roulette wheel over adaptive weights, updated with
+ * the profit gained per CPU millisecond spent. The destroy fraction grows 
+ * while the search stagnates and is reset when a new best solution is found.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPAdaptiveLNS
+{
+    public enum DestroyOperator { RANDOM, GREEDY, RELATED_BY_RESOURCE, RATIO }
+    public enum RepairOperator { RANDOM_FILL, GREEDY_FILL }
+    
+    private static final DestroyOperator[] DESTROY_OPERATORS = DestroyOperator.values();
+    private static final RepairOperator[] REPAIR_OPERATORS = RepairOperator.values();
+    private static final double REACTION_FACTOR = 0.1;
+    private static final double MIN_WEIGHT = 0.01;
+    private static final double NEW_BEST_BONUS = 2.0;
+    private static final double MIN_DESTROY_FRACTION = 0.05;
+    private static final double MAX_DESTROY_FRACTION = 0.5;
+    private static final double DESTROY_GROWTH = 1.5;
+    private static final int STAGNATION_LIMIT = 100;
+    
+    private final SolutionBuilderHandler builder;
+    private final MKPProblemInstance instance;
+    private final IndexedWeights weights;
+    private final int[] ratioRanks;
+    private final double[] destroyWeights = new double[DESTROY_OPERATORS.length];
+    private final double[] repairWeights = new double[REPAIR_OPERATORS.length];
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+    private double destroyFraction = MIN_DESTROY_FRACTION;
+    private final int[] includedIds;
+    private long[] keys = new long[16];
+
+    public MKPAdaptiveLNS(SolutionBuilderHandler builder, MKPProblemInstance instance)
+    {
+        if(builder == null)
+            throw new NullPointerException("Null builder");
+        
+        if(instance == null)
+            throw new NullPointerException("Null instance");
+        
+        this.builder = builder;
+        this.instance = instance;
+        this.weights = IndexedWeights.of(instance);
+        this.ratioRanks = calculateRatioRanks();
+        this.includedIds = new int[instance.getItemsCount()];
+        
+        Arrays.fill(destroyWeights, 1.0);
+        Arrays.fill(repairWeights, 1.0);
+    }
+    
+    private int[] calculateRatioRanks()
+    {
+        int itemsCount = instance.getItemsCount();
+        int resourcesCount = instance.getResourcesCount();
+        Integer[] order = new Integer[itemsCount];
+        double[] ratios = new double[itemsCount];
+        
+        for(int j = 0; j < itemsCount; j++)
+        {
+            double normalizedWeight = 0.0;
+            
+            for(int i = 0; i < resourcesCount; i++)
+                normalizedWeight += (double)weights.getWeight(j, i) / Math.max(1, instance.getResource(i).getCapacity());
+            
+            ratios[j] = instance.getProfit(j) / Math.max(normalizedWeight, Double.MIN_NORMAL);
+            order[j] = j;
+        }
+        
+        Arrays.sort(order, (a, b) -> Double.compare(ratios[a], ratios[b]));
+        int[] ranks = new int[itemsCount];
+        
+        for(int i = 0; i < itemsCount; i++)
+            ranks[order[i]] = i;
+        
+        return ranks;
+    }
+    
+    private long cpuTime()
+    {
+        return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+    
+    private static double nextDouble()
+    {
+        return RandomTool.getInt(Integer.MAX_VALUE) / (double)Integer.MAX_VALUE;
+    }
+    
+    private static int roulette(double[] weights)
+    {
+        double total = 0.0;
+        
+        for(int i = 0; i < weights.length; i++)
+            total += weights[i];
+        
+        double point = nextDouble() * total;
+        
+        for(int i = 0; i < weights.length - 1; i++)
+        {
+            point -= weights[i];
+            
+            if(point < 0.0)
+                return i;
+        }
+        
+        return weights.length - 1;
+    }
+    
+    private static void updateWeight(double[] weights, int op, double reward)
+    {
+        weights[op] = Math.max(MIN_WEIGHT, (1.0 - REACTION_FACTOR) * weights[op] + REACTION_FACTOR * reward);
+    }
+    
+    /**
+     * Removes the included items with the lowest keys, where the lower 32 
+     * bits of each key hold the item id.
+     */
+    private void removeLowestKeys(int count, int toRemove)
+    {
+        Arrays.sort(keys, 0, count);
+        
+        for(int i = 0; i < toRemove; i++)
+            builder.excludeTrusted((int)keys[i]);
+    }
+    
+    private void destroy(DestroyOperator op, int toRemove)
+    {
+        int count = builder.copyIncludedIds(includedIds);
+        
+        if(keys.length < count)
+            keys = new long[count];
+        
+        switch(op)
+        {
+            case RANDOM:
+                for(int i = 0; i < count; i++)
+                    keys[i] = ((long)RandomTool.getInt(Integer.MAX_VALUE) << 32) | includedIds[i];
+                
+                break;
+                
+            case GREEDY:
+                for(int i = 0; i < count; i++)
+                    keys[i] = ((long)instance.getProfit(includedIds[i]) << 32) | includedIds[i];
+                
+                break;
+                
+            case RELATED_BY_RESOURCE:
+                int resource = RandomTool.getInt(instance.getResourcesCount());
+                
+                for(int i = 0; i < count; i++)
+                {
+                    int id = includedIds[i];
+                    keys[i] = ((long)(Integer.MAX_VALUE - weights.getWeight(id, resource)) << 32) | id;
+                }
+                
+                break;
+                
+            case RATIO:
+                for(int i = 0; i < count; i++)
+                {
+                    int id = includedIds[i];
+                    keys[i] = ((long)ratioRanks[id] << 32) | id;
+                }
+                
+                break;
+        }
+        
+        removeLowestKeys(count, toRemove);
+    }
+    
+    private void repair(RepairOperator op)
+    {
+        if(op == RepairOperator.RANDOM_FILL)
+            builder.fillRandomly();
+        else
+            builder.fillGreedily();
+    }
+    
+    public double getDestroyWeight(DestroyOperator op)
+    {
+        return destroyWeights[op.ordinal()];
+    }
+    
+    public double getRepairWeight(RepairOperator op)
+    {
+        return repairWeights[op.ordinal()];
+    }
+
+    public double getDestroyFraction()
+    {
+        return destroyFraction;
+    }
+    
+    /**
+     * Runs the search from the current state of the builder, which must be
+     * feasible, and leaves the best solution found loaded in it.
+     * @param maxIterations the maximum number of destroy/repair cycles
+     * @param timeLimitMillis the time budget, or 0 for none; the search also 
+     * stops when the thread is interrupted
+     * @param tracker receives each new best solution, may be null
+     * @return the best solution found
+     */
+    public MKPSolution run(long maxIterations, long timeLimitMillis, BestSolutionTracker tracker) throws IllegalStateException
+    {
+        if(!builder.isFeasible())
+            throw new IllegalStateException("The search must start from a feasible solution");
+        
+        if(builder.getIncludedCount() == 0)
+            builder.fillGreedily();
+        
+        long deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1000000 : Long.MAX_VALUE;
+        MKPSolution best = builder.build();
+        int bestProfit = best.getTotalProfit();
+        int currentProfit = bestProfit;
+        int stagnation = 0;
+        
+        if(tracker != null)
+            tracker.offer(best);
+        
+        for(long it = 0; it < maxIterations && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted(); it++)
+        {
+            int included = builder.getIncludedCount();
+            
+            if(included == 0)
+                break;
+            
+            int destroyOp = roulette(destroyWeights);
+            int repairOp = roulette(repairWeights);
+            int toRemove = Math.max(1, (int)(included * destroyFraction));
+            long start = cpuTime();
+            int mark = builder.mark();
+            
+            destroy(DESTROY_OPERATORS[destroyOp], toRemove);
+            repair(REPAIR_OPERATORS[repairOp]);
+            
+            int newProfit = builder.getTotalProfit();
+            double elapsedMillis = Math.max(1e-3, (cpuTime() - start) / 1e6);
+            double reward = Math.max(0, newProfit - currentProfit) / elapsedMillis;
+            
+            if(newProfit > bestProfit)
+            {
+                reward += NEW_BEST_BONUS / elapsedMillis;
+                bestProfit = newProfit;
+                best = builder.build();
+                destroyFraction = MIN_DESTROY_FRACTION;
+                stagnation = 0;
+                
+                if(tracker != null)
+                    tracker.offer(best);
+            }
+            else if(++stagnation >= STAGNATION_LIMIT)
+            {
+                destroyFraction = Math.min(MAX_DESTROY_FRACTION, destroyFraction * DESTROY_GROWTH);
+                stagnation = 0;
+            }
+            
+            if(newProfit >= currentProfit)
+            {
+                currentProfit = newProfit;
+                builder.releaseMarks();
+            }
+            else
+            {
+                builder.rollback(mark);
+                builder.releaseMarks();
+            }
+            
+            updateWeight(destroyWeights, destroyOp, reward);
+            updateWeight(repairWeights, repairOp, reward);
+        }
+        
+        builder.importSolution(best);
+        return best;
+    }
+}
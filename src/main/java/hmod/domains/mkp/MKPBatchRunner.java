@@ -0,0 +1,190 @@
+package hmod.domains.mkp;
+
+import hmod.core.FlowchartFactory;
+import hmod.core.Statement;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import optefx.util.output.OutputManager;
+
+/**
+ * Solves every instance of a multi-instance file. The file is parsed once, in
+ * parallel through its instance offset index, and each instance gets its own
+ * domain (instance, builder and handlers), which are run concurrently on a 
+ * bounded thread pool.
+ * <p>
+ * The domains do not share any state, but the algorithm statements still use
+ * the global random and output tools of the framework.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPBatchRunner
+{
+    public static final class Result
+    {
+        private final int instanceNumber;
+        private final MKPSolution bestSolution;
+        private final long elapsedMillis;
+
+        private Result(int instanceNumber, MKPSolution bestSolution, long elapsedMillis)
+        {
+            this.instanceNumber = instanceNumber;
+            this.bestSolution = bestSolution;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getInstanceNumber()
+        {
+            return instanceNumber;
+        }
+
+        public MKPSolution getBestSolution()
+        {
+            return bestSolution;
+        }
+
+        public int getProfit()
+        {
+            return bestSolution.getTotalProfit();
+        }
+
+        public double getPorcentualGap()
+        {
+            return bestSolution.getPorcentualGap();
+        }
+
+        public long getElapsedMillis()
+        {
+            return elapsedMillis;
+        }
+    }
+    
+    private final MKPProblemInstance[] instances;
+    private final double[] lpOptimums;
+
+    public MKPBatchRunner(String file, String lpOptimumsFile) throws IOException
+    {
+        instances = parseInstances(file);
+        lpOptimums = new double[instances.length];
+        
+        // Read once, rather than scanning the file for each instance
+        Map<String, Double> lpOptimumsByKey = lpOptimumsFile == null ? 
+            Collections.emptyMap() : 
+            new MKPParser().readLPOptimums(lpOptimumsFile);
+        
+        for(int i = 0; i < instances.length; i++)
+        {
+            String key = MKPParser.lpOptimumKey(instances[i].getResourcesCount(), instances[i].getItemsCount(), i);
+            lpOptimums[i] = lpOptimumsByKey.getOrDefault(key, -1.0);
+        }
+    }
+
+    /**
+     * Parses the instances in parallel through the offset index of the file
+     * (persisted as a sidecar for later runs), unless it is compressed.
+     */
+    private static MKPProblemInstance[] parseInstances(String file) throws IOException
+    {
+        Path path = Paths.get(file);
+        
+        if(MKPParser.isCompressed(path))
+            return new MKPParser().parse(file);
+        
+        try
+        {
+            return MKPInstanceIndex.load(path).parseAll(Runtime.getRuntime().availableProcessors());
+        }
+        catch(InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing '" + file + "'");
+        }
+    }
+
+    public int getInstancesCount()
+    {
+        return instances.length;
+    }
+    
+    private Result solve(int instanceNumber, Function<MKPDomain, Statement> algorithm, MKPDomain.DefaultFillMethod fillMethod)
+    {
+        ProblemInstanceHandler pih = new ProblemInstanceHandler(instances[instanceNumber], lpOptimums[instanceNumber]);
+        MutableSolutionHandler sh = new MutableSolutionHandler();
+        MKPDomain mkpDomain = MKPDomain.create(pih, sh, fillMethod);
+        Statement statement = algorithm.apply(mkpDomain);
+        
+        long start = System.nanoTime();
+        FlowchartFactory.run(statement);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        
+        return new Result(instanceNumber, sh.getBestSolution(), elapsed);
+    }
+    
+    /**
+     * Runs the algorithm over all the instances of the file.
+     * @param algorithm builds the flowchart to run from the domain of each instance
+     * @param fillMethod the fill method used by {@link MKPDomain#initSolution()}
+     * @param threads the maximum number of instances solved at the same time
+     * @return the results, ordered by instance number
+     */
+    public List<Result> run(Function<MKPDomain, Statement> algorithm, MKPDomain.DefaultFillMethod fillMethod, int threads) throws InterruptedException, ExecutionException
+    {
+        if(threads <= 0)
+            throw new IllegalArgumentException("Wrong threads count: " + threads);
+        
+        if(instances.length == 0)
+            return new ArrayList<>();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, instances.length));
+        
+        try
+        {
+            List<Future<Result>> futures = new ArrayList<>(instances.length);
+            
+            for(int i = 0; i < instances.length; i++)
+            {
+                int instanceNumber = i;
+                futures.add(executor.submit(() -> solve(instanceNumber, algorithm, fillMethod)));
+            }
+            
+            List<Result> results = new ArrayList<>(instances.length);
+            
+            for(Future<Result> future : futures)
+                results.add(future.get());
+            
+            OutputManager.println(MKPOutputIds.BATCH_RESULTS, formatResults(results));
+            return results;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
+    public static String formatResults(List<Result> results)
+    {
+        StringBuilder sb = new StringBuilder(String.format("%-10s %12s %10s %12s%n", "Instance", "Profit", "Gap (%)", "Time (ms)"));
+        
+        for(Result result : results)
+        {
+            sb.append(String.format("%-10d %12d %10s %12d%n", 
+                result.getInstanceNumber(), 
+                result.getProfit(), 
+                result.getBestSolution().isGapAvailable() ? String.format("%.4f", result.getPorcentualGap()) : "-",
+                result.getElapsedMillis()
+            ));
+        }
+        
+        return sb.toString();
+    }
+}
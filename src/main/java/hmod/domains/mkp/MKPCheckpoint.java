@@ -0,0 +1,243 @@
+package hmod.domains.mkp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary checkpoint of one or more solutions (e.g. the best solution
+ * or an elite pool). Each solution is stored as a bitset of its items, its 
+ * profit, its constraint violation and its resource usage, after a header 
+ * holding the fingerprint of the instance they belong to.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPCheckpoint
+{
+    public static final int MAGIC = 0x4D4B5043;
+    public static final int VERSION = 1;
+    
+    /**
+     * Size in bytes of the header: magic, version, fingerprint, items count,
+     * resources count and solutions count.
+     */
+    public static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+    
+    private MKPCheckpoint(){}
+    
+    /**
+     * @return the size in bytes of a stored solution: profit, violation, the 
+     * resource usage and the item bitset
+     */
+    public static int solutionSize(int itemsCount, int resourcesCount)
+    {
+        return 4 + 4 + 4 * resourcesCount + 8 * ((itemsCount + 63) >>> 6);
+    }
+    
+    /**
+     * @return the size in bytes of a checkpoint holding the given number of 
+     * solutions
+     */
+    public static long checkpointSize(int itemsCount, int resourcesCount, int solutionsCount)
+    {
+        return HEADER_SIZE + (long)solutionsCount * solutionSize(itemsCount, resourcesCount);
+    }
+    
+    static long[] toBitset(MKPSolution solution)
+    {
+        long[] words = new long[(solution.getInstance().getItemsCount() + 63) >>> 6];
+        int[] ids = solution.getItemIds();
+        
+        for(int i = 0; i < ids.length; i++)
+            words[ids[i] >>> 6] |= 1L << ids[i];
+        
+        return words;
+    }
+    
+    /**
+     * Rebuilds a solution from its item bitset, recomputing the profit and 
+     * the resource usage with the instance weights. An infeasible solution is
+     * penalized with the provided violation, or with its capacity excess if
+     * the provided one is not positive.
+     */
+    static MKPSolution fromBitset(MKPProblemInstance instance, long[] words, int constraintViolation) throws IllegalArgumentException
+    {
+        int itemsCount = instance.getItemsCount();
+        int resourcesCount = instance.getResourcesCount();
+        IndexedWeights weights = IndexedWeights.of(instance);
+        int selectedCount = 0;
+        
+        for(int i = 0; i < words.length; i++)
+            selectedCount += Long.bitCount(words[i]);
+        
+        int[] ids = new int[selectedCount];
+        long[] usage = new long[resourcesCount];
+        int totalProfit = 0;
+        int pos = 0;
+        
+        for(int i = 0; i < words.length; i++)
+        {
+            long word = words[i];
+            
+            while(word != 0)
+            {
+                int id = (i << 6) + Long.numberOfTrailingZeros(word);
+                
+                if(id >= itemsCount)
+                    throw new IllegalArgumentException("Wrong item id: " + id);
+                
+                ids[pos++] = id;
+                totalProfit += instance.getProfit(id);
+                
+                for(int r = 0; r < resourcesCount; r++)
+                    usage[r] += weights.getWeight(id, r);
+                
+                word &= word - 1;
+            }
+        }
+        
+        long excess = 0;
+        
+        for(int r = 0; r < resourcesCount; r++)
+            excess += Math.max(0L, usage[r] - instance.getResource(r).getCapacity());
+        
+        int violation = excess == 0 ? 0 : constraintViolation > 0 ? constraintViolation : (int)Math.min(Integer.MAX_VALUE, excess);
+        return new DefaultMKPSolution(instance, totalProfit, violation, ids, DefaultMKPSolution.saturatedUsage(usage), HashUtils.zobristHash(instance, ids));
+    }
+    
+    public static void write(OutputStream output, MKPProblemInstance instance, List<MKPSolution> solutions) throws IOException
+    {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(output));
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeLong(instance.getFingerprint());
+        dos.writeInt(instance.getItemsCount());
+        dos.writeInt(instance.getResourcesCount());
+        dos.writeInt(solutions.size());
+        
+        for(MKPSolution solution : solutions)
+        {
+            long[] words = toBitset(solution);
+            int[] ids = solution.getItemIds();
+            int[] usage = solution.getResourceUsage();
+            int rawProfit = 0;
+            
+            for(int i = 0; i < ids.length; i++)
+                rawProfit += solution.getInstance().getProfit(ids[i]);
+            
+            dos.writeInt(solution.getTotalProfit());
+            dos.writeInt(rawProfit - solution.getTotalProfit());
+            
+            for(int i = 0; i < usage.length; i++)
+                dos.writeInt(usage[i]);
+            
+            for(int i = 0; i < words.length; i++)
+                dos.writeLong(words[i]);
+        }
+        
+        dos.flush();
+    }
+    
+    /**
+     * Writes the checkpoint to a temporary file that is then moved over the
+     * target, so an interrupted write never leaves a corrupt checkpoint.
+     */
+    public static void write(File file, MKPProblemInstance instance, List<MKPSolution> solutions) throws IOException
+    {
+        File tmp = new File(file.getPath() + ".tmp");
+        
+        try(OutputStream output = new FileOutputStream(tmp))
+        {
+            write(output, instance, solutions);
+        }
+        
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Reads the solutions of a checkpoint, validating that it belongs to the 
+     * provided instance. The profit, usage and feasibility of each solution 
+     * are recomputed from its items and checked against the stored ones.
+     */
+    public static List<MKPSolution> read(InputStream input, MKPProblemInstance instance) throws IOException
+    {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(input));
+        
+        if(dis.readInt() != MAGIC)
+            throw new IOException("Not a checkpoint file");
+        
+        int version = dis.readInt();
+        
+        if(version != VERSION)
+            throw new IOException("Unsupported checkpoint version: " + version);
+        
+        long fingerprint = dis.readLong();
+        int itemsCount = dis.readInt();
+        int resourcesCount = dis.readInt();
+        
+        if(itemsCount != instance.getItemsCount() || resourcesCount != instance.getResourcesCount() || fingerprint != instance.getFingerprint())
+            throw new IOException("The checkpoint does not belong to the problem instance");
+        
+        int count = dis.readInt();
+        List<MKPSolution> solutions = new ArrayList<>(count);
+        long[] words = new long[(itemsCount + 63) >>> 6];
+        
+        for(int k = 0; k < count; k++)
+        {
+            int totalProfit = dis.readInt();
+            int constraintViolation = dis.readInt();
+            int[] usage = new int[resourcesCount];
+            
+            for(int i = 0; i < resourcesCount; i++)
+                usage[i] = dis.readInt();
+            
+            for(int i = 0; i < words.length; i++)
+                words[i] = dis.readLong();
+            
+            MKPSolution solution;
+            
+            try
+            {
+                solution = fromBitset(instance, words, constraintViolation);
+            }
+            catch(IllegalArgumentException ex)
+            {
+                throw new IOException("Corrupt checkpoint solution " + k, ex);
+            }
+            
+            // Usage and feasibility are recomputed, so the stored ones must agree
+            if(!Arrays.equals(usage, solution.getResourceUsage()))
+                throw new IOException("Corrupt checkpoint solution " + k + ": wrong resource usage");
+            
+            if(solution.isFeasible() != (constraintViolation == 0))
+                throw new IOException("Corrupt checkpoint solution " + k + ": wrong feasibility");
+            
+            if(solution.getTotalProfit() != totalProfit)
+                throw new IOException("Corrupt checkpoint solution " + k + ": wrong profit");
+            
+            solutions.add(solution);
+        }
+        
+        return solutions;
+    }
+    
+    public static List<MKPSolution> read(File file, MKPProblemInstance instance) throws IOException
+    {
+        try(InputStream input = new FileInputStream(file))
+        {
+            return read(input, instance);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package hmod.domains.mkp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import optefx.util.output.OutputManager;
+
+/**
+ * Periodically persists the latest published solutions on a background 
+ * thread. Publishing (directly or as a best solution listener) only swaps a 
+ * reference, so the search is never paused by the checkpoint I/O.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPCheckpointWriter implements BestSolutionListener, AutoCloseable
+{
+    private final File file;
+    private final MKPProblemInstance instance;
+    private final AtomicReference<List<MKPSolution>> pending = new AtomicReference<>();
+    private final ScheduledExecutorService executor;
+
+    public MKPCheckpointWriter(File file, MKPProblemInstance instance, long periodMillis)
+    {
+        if(file == null)
+            throw new NullPointerException("Null file");
+        
+        if(instance == null)
+            throw new NullPointerException("Null instance");
+        
+        if(periodMillis <= 0)
+            throw new IllegalArgumentException("Wrong checkpoint period: " + periodMillis);
+        
+        this.file = file;
+        this.instance = instance;
+        this.executor = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread thread = new Thread(r, "mkp-checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        executor.scheduleWithFixedDelay(this::writePending, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void bestSolutionImproved(MKPSolution solution, long timestamp)
+    {
+        pending.set(Collections.singletonList(solution));
+    }
+    
+    public void publishPool(List<MKPSolution> elite)
+    {
+        pending.set(new ArrayList<>(elite));
+    }
+    
+    private synchronized void writePending()
+    {
+        List<MKPSolution> solutions = pending.getAndSet(null);
+        
+        if(solutions == null)
+            return;
+        
+        try
+        {
+            MKPCheckpoint.write(file, instance, solutions);
+        }
+        catch(IOException ex)
+        {
+            PrintWriter pw = OutputManager.getCurrent().getOutput(MKPOutputIds.WARNINGS);
+            
+            if(pw != null)
+                pw.println("Warning: cannot write the checkpoint '" + file + "': " + ex.getMessage());
+        }
+    }
+    
+    /**
+     * Writes any pending solution immediately.
+     */
+    public void flush()
+    {
+        writePending();
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+        flush();
+    }
+}
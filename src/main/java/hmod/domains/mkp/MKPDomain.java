@@ -2,9 +2,14 @@
 package hmod.domains.mkp;
 
 import static hmod.core.FlowchartFactory.*;
+import hmod.core.AlgorithmException;
+import hmod.core.Condition;
 import hmod.core.PlaceholderStatement;
 import hmod.core.Statement;
 import hmod.solvers.common.MutableIterationHandler;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.function.BiFunction;
 import optefx.loader.ComponentRegister;
 import optefx.loader.LoadsComponent;
@@ -13,6 +18,8 @@ import optefx.loader.Parameter;
 import optefx.loader.ParameterRegister;
 import optefx.loader.SelectableValue;
 import optefx.loader.Selector;
+import optefx.util.output.OutputManager;
+import optefx.util.random.RandomTool;
 
 /**
  *
@@ -38,12 +45,23 @@ public final class MKPDomain
     
     public static final DefaultFillMethod RANDOM_FILL = new DefaultFillMethod();
     public static final DefaultFillMethod GREEDY_FILL = new DefaultFillMethod();
+    public static final DefaultFillMethod ORDERED_RANDOM_FILL = new DefaultFillMethod();
     public static final DefaultRemoveMethod REMOVE_RANDOM = new DefaultRemoveMethod();
     public static final DefaultRemoveMethod REMOVE_GREEDY = new DefaultRemoveMethod();
     
     public static final Parameter<MKPFillMethod> FILL_METHOD = new Parameter<>("MKPDomain.FILL_METHOD");  
     public static final Parameter<String> INSTANCE = new Parameter<>("MKPDomain.INSTANCE_FILE");
     public static final Parameter<String> LP_OPTIMUM_SET = new Parameter<>("MKPDomain.LP_OPTIMUM_SET");
+    public static final Parameter<Boolean> PROPORTIONAL_PENALTY = new Parameter<>("MKPDomain.PROPORTIONAL_PENALTY");
+    public static final Parameter<Boolean> OPERATION_METRICS = new Parameter<>("MKPDomain.OPERATION_METRICS");
+    public static final Parameter<String> CONVERGENCE_TRACE_FILE = new Parameter<>("MKPDomain.CONVERGENCE_TRACE_FILE");
+    public static final Parameter<Integer> CONVERGENCE_TRACE_CAPACITY = new Parameter<>("MKPDomain.CONVERGENCE_TRACE_CAPACITY");
+    public static final Parameter<Boolean> CONVERGENCE_TRACE_SAVES = new Parameter<>("MKPDomain.CONVERGENCE_TRACE_SAVES");
+    public static final Parameter<String> CHECKPOINT_FILE = new Parameter<>("MKPDomain.CHECKPOINT_FILE");
+    public static final Parameter<Integer> CHECKPOINT_PERIOD = new Parameter<>("MKPDomain.CHECKPOINT_PERIOD");
+    
+    private static final int DEFAULT_TRACE_CAPACITY = 1 << 16;
+    private static final int DEFAULT_CHECKPOINT_PERIOD = 1000;
     
     @LoadsComponent({ MKPDomain.class, ProblemInstanceHandler.class, SolutionHandler.class, SolutionBuilderHandler.class })
     public static void load(ComponentRegister cr, ParameterRegister pr) throws ModuleLoadException
@@ -53,15 +71,76 @@ public final class MKPDomain
         String instanceFile = instanceFileInfo[0];
         int instanceNumber = Integer.parseInt(instanceFileInfo[1]);
         String lpOptimumsFile = pr.getValue(LP_OPTIMUM_SET);
+        Boolean proportionalPenalty = pr.getValue(PROPORTIONAL_PENALTY);
+        Boolean operationMetrics = pr.getValue(OPERATION_METRICS);
+        MKPMetrics metrics = operationMetrics != null && operationMetrics ? new MKPMetrics() : null;
+        String traceFile = pr.getValue(CONVERGENCE_TRACE_FILE);
+        Integer traceCapacity = pr.getValue(CONVERGENCE_TRACE_CAPACITY);
+        Boolean traceSaves = pr.getValue(CONVERGENCE_TRACE_SAVES);
+        String checkpointFile = pr.getValue(CHECKPOINT_FILE);
+        Integer checkpointPeriod = pr.getValue(CHECKPOINT_PERIOD);
         
         ProblemInstanceHandler pih = cr.provide(new ProblemInstanceHandler(instanceFile, instanceNumber, lpOptimumsFile));
         MutableSolutionHandler sh = cr.provide(new MutableSolutionHandler(), SolutionHandler.class);
+        
+        if(traceFile != null)
+        {
+            ConvergenceTrace trace = new ConvergenceTrace(traceCapacity != null ? traceCapacity : DEFAULT_TRACE_CAPACITY);
+            sh.setConvergenceTrace(trace, traceSaves != null && traceSaves);
+        }
+        
         SolutionBuilderHandler sbh = cr.provide(new SolutionBuilderHandler(pih));
-        MKPDomain mkpDomain = cr.provide(new MKPDomain(pih, sh, sbh));
+        sbh.setProportionalPenalty(proportionalPenalty != null && proportionalPenalty);
+        sbh.setMetrics(metrics);
+        MKPDomain mkpDomain = cr.provide(new MKPDomain(pih, sh, sbh, metrics, traceFile));
+        
+        if(checkpointFile != null)
+        {
+            try
+            {
+                mkpDomain.checkpointWriter = resumeFromCheckpoint(new File(checkpointFile), pih, sh, checkpointPeriod != null ? checkpointPeriod : DEFAULT_CHECKPOINT_PERIOD);
+            }
+            catch(IOException ex)
+            {
+                throw new RuntimeException("Cannot resume from the checkpoint in file '" + checkpointFile + "'", ex);
+            }
+        }
         
         pr.addBoundHandler(fm, (v) -> mkpDomain.fillMethod.set(v));
     }
     
+    /**
+     * Provides the first solution of an existing checkpoint as the initial 
+     * solution and as the incumbent best, and attaches a writer that keeps 
+     * the checkpoint updated with later improvements.
+     */
+    static MKPCheckpointWriter resumeFromCheckpoint(File file, ProblemInstanceHandler pih, MutableSolutionHandler sh, long periodMillis) throws IOException
+    {
+        if(file.exists())
+        {
+            List<MKPSolution> solutions = MKPCheckpoint.read(file, pih);
+            
+            if(!solutions.isEmpty())
+            {
+                sh.provideSolution(solutions.get(0));
+                sh.getBestSolutionTracker().offer(solutions.get(0));
+            }
+        }
+        
+        MKPCheckpointWriter writer = new MKPCheckpointWriter(file, pih, periodMillis);
+        sh.getBestSolutionTracker().addListener(writer);
+        
+        return writer;
+    }
+    
+    static MKPDomain create(ProblemInstanceHandler pih, MutableSolutionHandler sh, DefaultFillMethod fm)
+    {
+        MKPDomain mkpDomain = new MKPDomain(pih, sh, new SolutionBuilderHandler(pih), null, null);
+        mkpDomain.fillMethod.set(mkpDomain.fillMethod(fm));
+        
+        return mkpDomain;
+    }
+    
     private Statement initSolution;
     private Statement loadSolution;
     private Statement saveSolution;
@@ -69,6 +148,10 @@ public final class MKPDomain
     private MKPOperators mkpOps;
     private SolutionBuilderHandler sbh;
     private ProblemInstanceHandler pih;
+    private MutableSolutionHandler sh;
+    private MKPMetrics metrics;
+    private MKPCheckpointWriter checkpointWriter;
+    private volatile boolean stopRequested;
     private final Selector<MKPFillMethod, Statement> fillMethods = new Selector<>();
     private final Selector<MKPRemoveMethod, Statement> heuristics = new Selector<>();
     private final PlaceholderStatement<Statement> fillMethod = new PlaceholderStatement<>();
@@ -79,16 +162,27 @@ public final class MKPDomain
     public Statement reportSolution() { return reportSolution; }
     public Statement fillMethod(DefaultFillMethod fm) { return fillMethods.get(fm); }
     public Statement removeMethod(DefaultRemoveMethod h) { return heuristics.get(h); }
+    public BestSolutionTracker getBestSolutionTracker() { return sh.getBestSolutionTracker(); }
 
     private MKPDomain(ProblemInstanceHandler pih,
                       MutableSolutionHandler sh,
-                      SolutionBuilderHandler sbh)
+                      SolutionBuilderHandler sbh,
+                      MKPMetrics metrics,
+                      String traceFile)
     {
         this.mkpOps = new MKPOperators(sh, sbh);
         this.sbh = sbh;
         this.pih = pih;
+        this.sh = sh;
+        this.metrics = metrics;
+        
+        Statement startTrace = () -> {
+            if(sh.getConvergenceTrace() != null)
+                sh.getConvergenceTrace().start();
+        };
         
         initSolution = block(
+            startTrace,
             If(NOT(sh::isSolutionProvided)).then(
                 sbh::clear,
                 fillMethod
@@ -96,15 +190,28 @@ public final class MKPDomain
         );
         
         loadSolution = block(
+            startTrace,
             If(sh::isSolutionProvided).then(
                 mkpOps::loadProvidedSolutionInBuilder
             )
         );
         
-        saveSolution = mkpOps::saveBuildedSolutionForRetrieving;
-        reportSolution = mkpOps::reportSolution;
+        saveSolution = measure(MKPMetrics.Operation.SAVE, mkpOps::saveBuildedSolutionForRetrieving);
+        
+        reportSolution = block(
+            mkpOps::reportSolution,
+            If(() -> metrics != null).then(
+                () -> OutputManager.println(MKPOutputIds.OPERATION_METRICS, "***********************\n\n" + metrics)
+            ),
+            If(() -> sh.getConvergenceTrace() != null).then(
+                () -> mkpOps.exportConvergenceTrace(traceFile)
+            ),
+            If(() -> checkpointWriter != null).then(
+                () -> checkpointWriter.close()
+            )
+        );
         
-        heuristics.add(REMOVE_RANDOM, block(() -> {
+        heuristics.add(REMOVE_RANDOM, measure(MKPMetrics.Operation.REMOVE, block(() -> {
             SelectedItemHandler sih = new SelectedItemHandler(pih);
 
             return block(
@@ -112,9 +219,9 @@ public final class MKPDomain
                 mkpOps.selectRandomIncludedItemInBuild(sih),
                 mkpOps.removeSelectedItemFromBuild(sih)
             );
-        }));
+        })));
         
-        heuristics.add(REMOVE_GREEDY, block(() -> {
+        heuristics.add(REMOVE_GREEDY, measure(MKPMetrics.Operation.REMOVE, block(() -> {
             SelectedItemHandler sih = new SelectedItemHandler(pih);
             ItemListHandler ilh = new ItemListHandler(pih);
 
@@ -124,10 +231,37 @@ public final class MKPDomain
                 MKPOperators.selectWorstProfitableItemInList(ilh, sih),
                 mkpOps.removeSelectedItemFromBuild(sih)
             );
-        }));
+        })));
         
-        fillMethods.add(RANDOM_FILL, fillMethod(MKPOperators::selectRandomItemInList));
-        fillMethods.add(GREEDY_FILL, fillMethod(MKPOperators::selectMostProfitableItemInList));
+        fillMethods.add(RANDOM_FILL, measure(MKPMetrics.Operation.FILL, mkpOps.fusedRandomFill()));
+        fillMethods.add(GREEDY_FILL, measure(MKPMetrics.Operation.FILL, mkpOps.fusedGreedyFill()));
+        fillMethods.add(ORDERED_RANDOM_FILL, measure(MKPMetrics.Operation.FILL, mkpOps.fusedOrderedRandomFill()));
+    }
+    
+    private Statement measure(MKPMetrics.Operation op, Statement statement)
+    {
+        if(metrics == null)
+            return statement;
+        
+        long[] start = new long[1];
+        
+        return block(
+            () -> start[0] = metrics.begin(op),
+            statement,
+            () -> metrics.end(op, start[0])
+        );
+    }
+    
+    /**
+     * @return the version of the dynamic instance being solved, or 0 if it is
+     * not dynamic. The builder takes the current data on each clear, but the
+     * genetic algorithm and the ALNS keep the data they were created with, so
+     * they are created again when the version changes.
+     */
+    private long getInstanceVersion()
+    {
+        DynamicProblemInstance dynamic = DynamicProblemInstance.of(pih);
+        return dynamic == null ? 0 : dynamic.getVersion();
     }
     
     public Statement multiRemove(Statement removeMethodBlock, double perc, boolean random)
@@ -145,6 +279,106 @@ public final class MKPDomain
         });
     }
     
+    /**
+     * Runs the steady-state genetic algorithm over the instance, publishing 
+     * its improvements to the best solution tracker, and loads its final best
+     * solution in the builder.
+     */
+    public Statement geneticAlgorithm(int populationSize, long maxEvaluations, long timeLimitMillis, int threads)
+    {
+        return block(() -> {
+            MKPGeneticAlgorithm[] ga = { new MKPGeneticAlgorithm(pih, populationSize, threads) };
+            long[] version = { getInstanceVersion() };
+            
+            return () -> {
+                if(version[0] != getInstanceVersion())
+                {
+                    ga[0] = new MKPGeneticAlgorithm(pih, populationSize, threads);
+                    version[0] = getInstanceVersion();
+                }
+                
+                try
+                {
+                    MKPSolution best = ga[0].run(maxEvaluations, timeLimitMillis, RandomTool.getInt(Integer.MAX_VALUE), sh.getBestSolutionTracker());
+                    sbh.importSolution(best);
+                }
+                catch(InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new AlgorithmException("The genetic algorithm was interrupted", ex);
+                }
+            };
+        });
+    }
+    
+    /**
+     * Runs the adaptive large neighbourhood search from the current build,
+     * publishing its improvements to the best solution tracker, and leaves 
+     * its best solution in the builder.
+     */
+    public Statement adaptiveLNS(long maxIterations, long timeLimitMillis)
+    {
+        return block(() -> {
+            MKPAdaptiveLNS[] alns = { new MKPAdaptiveLNS(sbh, pih) };
+            long[] version = { getInstanceVersion() };
+            
+            return () -> {
+                if(version[0] != getInstanceVersion())
+                {
+                    alns[0] = new MKPAdaptiveLNS(sbh, pih);
+                    version[0] = getInstanceVersion();
+                }
+                
+                alns[0].run(maxIterations, timeLimitMillis, sh.getBestSolutionTracker());
+            };
+        });
+    }
+    
+    /**
+     * Condition that holds once an external stop has been requested for this
+     * domain (e.g. by {@link MKPPortfolio}), for the loops of cooperative 
+     * algorithms.
+     */
+    public Condition stopRequested()
+    {
+        return () -> stopRequested;
+    }
+    
+    void requestStop()
+    {
+        stopRequested = true;
+    }
+    
+    /**
+     * Loads the best solution received by an island in the builder, if it 
+     * improves the current build.
+     */
+    public Statement importImmigrant(MKPIsland island)
+    {
+        return () -> island.importImmigrant(sbh);
+    }
+    
+    /**
+     * Condition that holds once the best solution found is feasible and its 
+     * gap with respect to the integral LP bound is at most the provided one;
+     * with a zero gap, the solution is optimal. The target profit is computed
+     * once, and each evaluation is O(1). The condition never holds if the LP
+     * optimum of the instance is not available.
+     */
+    public Condition targetReached(double epsilonGap)
+    {
+        if(!(epsilonGap >= 0.0 && epsilonGap < 1.0))
+            throw new IllegalArgumentException("The gap must be in [0, 1): " + epsilonGap);
+        
+        if(!pih.isLPOptimumAvailable())
+            return () -> false;
+        
+        BestSolutionTracker tracker = sh.getBestSolutionTracker();
+        int targetProfit = (int)Math.ceil(pih.getIntegralBound() * (1.0 - epsilonGap));
+        
+        return () -> tracker.isProfitReached(targetProfit);
+    }
+    
     public Statement fillMethod(BiFunction<ItemListHandler, SelectedItemHandler, Statement> selector)
     {
         ItemListHandler itemListHandler = new ItemListHandler(pih);
@@ -0,0 +1,512 @@
+package hmod.domains.mkp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Steady-state genetic algorithm of Chu & Beasley for the MKP. Chromosomes 
+ * are item bitsets; children are produced by binary tournament, uniform 
+ * crossover and a two-bit mutation, then made feasible and improved by a 
+ * DROP/ADD repair driven by pseudo-utility ratios (profit over the 
+ * capacity-normalized weights). Children equal to a population member are
+ * discarded; otherwise they replace the worst member.
+ * <p>
+ * Children are generated in batches and their repair, which dominates the 
+ * cost, is spread across the worker threads. The repair is deterministic, so 
+ * the results only depend on the seed and not on the threads scheduling.
+ * <p>
+ * The weights are read through the instance, following its sparse rows when
+ * it has them, so no dense copy of the matrix is made. Items retired from a
+ * {@link DynamicProblemInstance} when the algorithm is created are never 
+ * included. The run is interrupted between batches.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPGeneticAlgorithm
+{
+    private static final int CHILDREN_PER_THREAD = 8;
+    private static final int MUTATED_BITS = 2;
+    private static final int MAX_INIT_ATTEMPTS = 50;
+    
+    private final class Individual
+    {
+        private final long[] bits = new long[wordsCount];
+        private final long[] usage = new long[resourcesCount];
+        private int profit;
+        private long hash;
+        
+        private boolean has(int item)
+        {
+            return (bits[item >>> 6] & (1L << item)) != 0;
+        }
+        
+        private void add(int item)
+        {
+            bits[item >>> 6] |= 1L << item;
+            profit += profits[item];
+            addUsage(item, 1);
+        }
+        
+        /**
+         * Adds the weights of an item to the usage, multiplied by the sign.
+         * @return the change in the number of violated resources
+         */
+        private int addUsage(int item, int sign)
+        {
+            int change = 0;
+            
+            if(rowStarts != null)
+            {
+                for(int k = rowStarts[item]; k < rowStarts[item + 1]; k++)
+                    change += changeUsage(rowResources[k], sign * rowWeights[k]);
+            }
+            else
+            {
+                for(int i = 0; i < resourcesCount; i++)
+                    change += changeUsage(i, sign * weights.getWeight(item, i));
+            }
+            
+            return change;
+        }
+        
+        private int changeUsage(int resource, int weight)
+        {
+            boolean wasViolated = usage[resource] > capacities[resource];
+            usage[resource] += weight;
+            boolean isViolated = usage[resource] > capacities[resource];
+            
+            return (isViolated ? 1 : 0) - (wasViolated ? 1 : 0);
+        }
+        
+        private int countItems()
+        {
+            int count = 0;
+            
+            for(int w = 0; w < wordsCount; w++)
+                count += Long.bitCount(bits[w]);
+            
+            return count;
+        }
+        
+        /**
+         * Only used on feasible individuals, so a sparse row only needs its 
+         * own resources to be checked.
+         */
+        private boolean fits(int item)
+        {
+            if(rowStarts != null)
+            {
+                for(int k = rowStarts[item]; k < rowStarts[item + 1]; k++)
+                {
+                    int resource = rowResources[k];
+                    
+                    if(usage[resource] + rowWeights[k] > capacities[resource])
+                        return false;
+                }
+                
+                return true;
+            }
+            
+            for(int i = 0; i < resourcesCount; i++)
+            {
+                if(usage[i] + weights.getWeight(item, i) > capacities[i])
+                    return false;
+            }
+            
+            return true;
+        }
+        
+        private void evaluate()
+        {
+            profit = 0;
+            
+            for(int i = 0; i < resourcesCount; i++)
+                usage[i] = 0;
+            
+            for(int w = 0; w < wordsCount; w++)
+            {
+                long word = bits[w];
+                
+                while(word != 0)
+                {
+                    int item = (w << 6) + Long.numberOfTrailingZeros(word);
+                    profit += profits[item];
+                    addUsage(item, 1);
+                    word &= word - 1;
+                }
+            }
+        }
+        
+        private void repair()
+        {
+            // Mutation may have set the bit of a retired item
+            if(tombstones != null)
+            {
+                for(int w = 0; w < wordsCount; w++)
+                    bits[w] &= ~tombstones[w];
+            }
+            
+            evaluate();
+            int violated = 0;
+            
+            for(int i = 0; i < resourcesCount; i++)
+            {
+                if(usage[i] > capacities[i])
+                    violated++;
+            }
+            
+            // DROP phase, lowest utility first
+            for(int k = 0; k < utilityOrder.length && violated > 0; k++)
+            {
+                int item = utilityOrder[k];
+                
+                if(!has(item))
+                    continue;
+                
+                bits[item >>> 6] &= ~(1L << item);
+                profit -= profits[item];
+                violated += addUsage(item, -1);
+            }
+            
+            // ADD phase, highest utility first
+            for(int k = utilityOrder.length - 1; k >= 0; k--)
+            {
+                int item = utilityOrder[k];
+                
+                if(!has(item) && fits(item))
+                    add(item);
+            }
+            
+            hash = 0;
+            
+            for(int w = 0; w < wordsCount; w++)
+                hash = HashUtils.mix(hash + bits[w] + w * HashUtils.GOLDEN_GAMMA);
+        }
+    }
+    
+    private final MKPProblemInstance instance;
+    private final int itemsCount;
+    private final int resourcesCount;
+    private final int wordsCount;
+    private final int[] profits;
+    private final int[] capacities;
+    private final IndexedWeights weights;
+    private final int[] rowStarts;
+    private final int[] rowResources;
+    private final int[] rowWeights;
+    private final long[] tombstones;
+    private final int[] utilityOrder;
+    private final int populationSize;
+    private final int threads;
+
+    public MKPGeneticAlgorithm(MKPProblemInstance instance, int populationSize, int threads)
+    {
+        if(instance == null)
+            throw new NullPointerException("Null instance");
+        
+        if(populationSize < 2)
+            throw new IllegalArgumentException("Wrong population size: " + populationSize);
+        
+        if(threads <= 0)
+            throw new IllegalArgumentException("Wrong threads count: " + threads);
+        
+        this.instance = instance;
+        this.populationSize = populationSize;
+        this.threads = threads;
+        this.itemsCount = instance.getItemsCount();
+        this.resourcesCount = instance.getResourcesCount();
+        this.wordsCount = (itemsCount + 63) >>> 6;
+        this.profits = new int[itemsCount];
+        this.capacities = new int[resourcesCount];
+        this.weights = IndexedWeights.of(instance);
+        
+        SparseProblemInstance sparse = SparseProblemInstance.of(instance);
+        this.rowStarts = sparse == null ? null : sparse.getRowStarts();
+        this.rowResources = sparse == null ? null : sparse.getRowResources();
+        this.rowWeights = sparse == null ? null : sparse.getRowWeights();
+        
+        DynamicProblemInstance dynamic = DynamicProblemInstance.of(instance);
+        this.tombstones = dynamic == null ? null : dynamic.getTombstones().clone();
+        
+        for(int i = 0; i < resourcesCount; i++)
+            capacities[i] = instance.getResource(i).getCapacity();
+        
+        double[] utilities = new double[itemsCount];
+        
+        for(int j = 0; j < itemsCount; j++)
+        {
+            double normalizedWeight = 0.0;
+            profits[j] = instance.getProfit(j);
+            
+            for(int i = 0; i < resourcesCount; i++)
+                normalizedWeight += (double)weights.getWeight(j, i) / Math.max(1, capacities[i]);
+            
+            utilities[j] = profits[j] / Math.max(normalizedWeight, Double.MIN_NORMAL);
+        }
+        
+        this.utilityOrder = sortedByKey(utilities);
+    }
+    
+    private boolean isRetired(int item)
+    {
+        return tombstones != null && (tombstones[item >>> 6] & (1L << item)) != 0;
+    }
+    
+    /**
+     * @return the live items, by increasing key
+     */
+    private int[] sortedByKey(double[] keys)
+    {
+        int liveCount = 0;
+        
+        for(int i = 0; i < keys.length; i++)
+        {
+            if(!isRetired(i))
+                liveCount++;
+        }
+        
+        Integer[] order = new Integer[liveCount];
+        
+        for(int i = 0, pos = 0; i < keys.length; i++)
+        {
+            if(!isRetired(i))
+                order[pos++] = i;
+        }
+        
+        Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+        int[] result = new int[order.length];
+        
+        for(int i = 0; i < order.length; i++)
+            result[i] = order[i];
+        
+        return result;
+    }
+    
+    private Individual randomIndividual(SplittableRandom random)
+    {
+        Individual ind = new Individual();
+        int[] perm = new int[itemsCount];
+        
+        for(int i = 0; i < itemsCount; i++)
+            perm[i] = i;
+        
+        for(int i = itemsCount - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int tmp = perm[i];
+            perm[i] = perm[j];
+            perm[j] = tmp;
+        }
+        
+        for(int i = 0; i < itemsCount; i++)
+        {
+            if(!isRetired(perm[i]) && ind.fits(perm[i]))
+                ind.add(perm[i]);
+        }
+        
+        ind.repair();
+        return ind;
+    }
+    
+    private Individual tournament(Individual[] population, SplittableRandom random)
+    {
+        Individual a = population[random.nextInt(populationSize)];
+        Individual b = population[random.nextInt(populationSize)];
+        
+        return a.profit >= b.profit ? a : b;
+    }
+    
+    private Individual offspring(Individual[] population, SplittableRandom random)
+    {
+        Individual p1 = tournament(population, random);
+        Individual p2 = tournament(population, random);
+        Individual child = new Individual();
+        
+        for(int w = 0; w < wordsCount; w++)
+        {
+            long mask = random.nextLong();
+            child.bits[w] = (p1.bits[w] & mask) | (p2.bits[w] & ~mask);
+        }
+        
+        for(int k = 0; k < MUTATED_BITS; k++)
+        {
+            int item = random.nextInt(itemsCount);
+            child.bits[item >>> 6] ^= 1L << item;
+        }
+        
+        return child;
+    }
+    
+    private void repairAll(Individual[] children, int count, ExecutorService executor) throws InterruptedException
+    {
+        if(executor == null)
+        {
+            for(int i = 0; i < count; i++)
+                children[i].repair();
+            
+            return;
+        }
+        
+        List<Callable<Void>> tasks = new ArrayList<>(threads);
+        
+        for(int t = 0; t < threads; t++)
+        {
+            int first = t;
+            
+            tasks.add(() -> {
+                for(int i = first; i < count; i += threads)
+                    children[i].repair();
+                
+                return null;
+            });
+        }
+        
+        try
+        {
+            for(Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        }
+        catch(ExecutionException ex)
+        {
+            throw new IllegalStateException("Error while repairing offspring", ex.getCause());
+        }
+    }
+    
+    private MKPSolution toSolution(Individual ind)
+    {
+        int[] ids = new int[ind.countItems()];
+        int pos = 0;
+        
+        for(int w = 0; w < wordsCount; w++)
+        {
+            long word = ind.bits[w];
+            
+            while(word != 0)
+            {
+                ids[pos++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        
+        return new DefaultMKPSolution(instance, ind.profit, 0, ids, DefaultMKPSolution.saturatedUsage(ind.usage), HashUtils.zobristHash(instance, ids));
+    }
+    
+    /**
+     * Population hashes with their multiplicity, so replacing one of two 
+     * members with the same hash keeps the hash of the other one.
+     */
+    private static void addHash(Map<Long, Integer> hashes, long hash)
+    {
+        hashes.merge(hash, 1, Integer::sum);
+    }
+    
+    private static void removeHash(Map<Long, Integer> hashes, long hash)
+    {
+        hashes.computeIfPresent(hash, (h, count) -> count == 1 ? null : count - 1);
+    }
+    
+    /**
+     * Runs the algorithm until the evaluations or the time budget are 
+     * exhausted.
+     * @param maxEvaluations the maximum number of offspring evaluated
+     * @param timeLimitMillis the time budget, or 0 for none
+     * @param seed the seed of the random choices
+     * @param tracker receives each new best solution, may be null
+     * @return the best solution found
+     * @throws InterruptedException if the thread is interrupted, checked once
+     * per batch of offspring
+     */
+    public MKPSolution run(long maxEvaluations, long timeLimitMillis, long seed, BestSolutionTracker tracker) throws InterruptedException
+    {
+        long deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1000000 : Long.MAX_VALUE;
+        SplittableRandom random = new SplittableRandom(seed);
+        Individual[] population = new Individual[populationSize];
+        Map<Long, Integer> hashes = new HashMap<>(populationSize * 2);
+        Individual best = null;
+        
+        for(int i = 0; i < populationSize; i++)
+        {
+            Individual ind = randomIndividual(random);
+            
+            for(int k = 0; k < MAX_INIT_ATTEMPTS && hashes.containsKey(ind.hash); k++)
+                ind = randomIndividual(random);
+            
+            population[i] = ind;
+            addHash(hashes, ind.hash);
+            
+            if(best == null || best.profit < ind.profit)
+                best = ind;
+        }
+        
+        if(tracker != null)
+            tracker.offer(toSolution(best));
+        
+        int batchSize = threads * CHILDREN_PER_THREAD;
+        Individual[] children = new Individual[batchSize];
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        long evaluations = 0;
+        
+        try
+        {
+            while(evaluations < maxEvaluations && System.nanoTime() < deadline)
+            {
+                // The worker pool also throws when interrupted, but a single
+                // thread has no pool
+                if(Thread.interrupted())
+                    throw new InterruptedException("The genetic algorithm was interrupted");
+                
+                int count = (int)Math.min(batchSize, maxEvaluations - evaluations);
+                
+                for(int i = 0; i < count; i++)
+                    children[i] = offspring(population, random);
+                
+                repairAll(children, count, executor);
+                evaluations += count;
+                
+                for(int i = 0; i < count; i++)
+                {
+                    Individual child = children[i];
+                    
+                    if(hashes.containsKey(child.hash))
+                        continue;
+                    
+                    int worst = 0;
+                    
+                    for(int k = 1; k < populationSize; k++)
+                    {
+                        if(population[k].profit < population[worst].profit)
+                            worst = k;
+                    }
+                    
+                    removeHash(hashes, population[worst].hash);
+                    addHash(hashes, child.hash);
+                    population[worst] = child;
+                    
+                    if(best.profit < child.profit)
+                    {
+                        best = child;
+                        
+                        if(tracker != null)
+                            tracker.offer(toSolution(best));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if(executor != null)
+                executor.shutdownNow();
+        }
+        
+        return toSolution(best);
+    }
+}
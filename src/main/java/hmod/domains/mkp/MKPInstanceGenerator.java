@@ -0,0 +1,309 @@
+package hmod.domains.mkp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Generator of Chu & Beasley correlated instances. Weights are uniform in
+ * [1, 1000], capacities are the tightness ratio times the sum of the weights
+ * of each resource, and profits are the mean weight of each item plus a 
+ * uniform value in [0, 500).
+ * <p>
+ * Every weight is derived from a counter-based hash of its position, so the
+ * streaming writers regenerate the matrix on each pass instead of storing it,
+ * keeping memory proportional to the number of items plus resources. The
+ * text output follows the format read by {@link MKPParser}; the binary output
+ * holds the same sequence of values as big-endian ints, preceded by 
+ * {@link #BINARY_MAGIC} and the instances count.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPInstanceGenerator
+{
+    public static final int BINARY_MAGIC = 0x4D4B5031;
+    
+    private static final int MAX_WEIGHT = 1000;
+    private static final int MAX_PROFIT_NOISE = 500;
+    
+    private final int itemsCount;
+    private final int resourcesCount;
+    private final double tightness;
+    private final long seed;
+
+    public MKPInstanceGenerator(int itemsCount, int resourcesCount, double tightness, long seed)
+    {
+        if(itemsCount <= 0)
+            throw new IllegalArgumentException("Wrong items count: " + itemsCount);
+        
+        if(resourcesCount <= 0)
+            throw new IllegalArgumentException("Wrong resources count: " + resourcesCount);
+        
+        if(!(tightness > 0.0 && tightness <= 1.0))
+            throw new IllegalArgumentException("The tightness ratio must be in (0, 1]: " + tightness);
+        
+        if((long)itemsCount * MAX_WEIGHT * tightness > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The capacities of " + itemsCount + " items would overflow");
+        
+        this.itemsCount = itemsCount;
+        this.resourcesCount = resourcesCount;
+        this.tightness = tightness;
+        this.seed = seed;
+    }
+    
+    private long instanceSeed(int instanceNumber)
+    {
+        return HashUtils.mix(seed + instanceNumber * HashUtils.GOLDEN_GAMMA);
+    }
+    
+    private int weight(long instanceSeed, int item, int resource)
+    {
+        long cell = (long)resource * itemsCount + item + 1;
+        return 1 + (int)((HashUtils.mix(instanceSeed + cell * HashUtils.GOLDEN_GAMMA) >>> 1) % MAX_WEIGHT);
+    }
+    
+    private int profitNoise(long instanceSeed, int item)
+    {
+        double q = (HashUtils.mix(~instanceSeed + (item + 1) * HashUtils.GOLDEN_GAMMA) >>> 11) * 0x1.0p-53;
+        return (int)(q * MAX_PROFIT_NOISE);
+    }
+    
+    /**
+     * Computes the profits and capacities of an instance with a full pass over
+     * the (regenerated) weights.
+     */
+    private void computeTotals(long instanceSeed, int[] profits, int[] capacities)
+    {
+        long[] weightSums = new long[resourcesCount];
+        
+        for(int j = 0; j < itemsCount; j++)
+        {
+            long itemSum = 0;
+            
+            for(int i = 0; i < resourcesCount; i++)
+            {
+                int w = weight(instanceSeed, j, i);
+                itemSum += w;
+                weightSums[i] += w;
+            }
+            
+            profits[j] = (int)(itemSum / resourcesCount) + profitNoise(instanceSeed, j);
+        }
+        
+        for(int i = 0; i < resourcesCount; i++)
+            capacities[i] = (int)(tightness * weightSums[i]);
+    }
+
+    public int getItemsCount()
+    {
+        return itemsCount;
+    }
+
+    public int getResourcesCount()
+    {
+        return resourcesCount;
+    }
+
+    public double getTightness()
+    {
+        return tightness;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+    
+    public MKPProblemInstance generate(int instanceNumber)
+    {
+        if((long)itemsCount * resourcesCount > Integer.MAX_VALUE)
+            throw new IllegalStateException("The instance is too large to be generated in memory");
+        
+        long instanceSeed = instanceSeed(instanceNumber);
+        int[] profits = new int[itemsCount];
+        int[] capacities = new int[resourcesCount];
+        int[] weights = new int[itemsCount * resourcesCount];
+        computeTotals(instanceSeed, profits, capacities);
+        
+        for(int j = 0; j < itemsCount; j++)
+        {
+            for(int i = 0; i < resourcesCount; i++)
+                weights[j * resourcesCount + i] = weight(instanceSeed, j, i);
+        }
+        
+        return new DenseProblemInstance(instanceNumber, profits, capacities, weights);
+    }
+    
+    public void writeText(OutputStream output, int instancesCount) throws IOException
+    {
+        if(instancesCount <= 0)
+            throw new IllegalArgumentException("Wrong instances count: " + instancesCount);
+        
+        TextWriter writer = new TextWriter(output);
+        writer.writeInt(instancesCount);
+        writer.writeByte('\n');
+        
+        int[] profits = new int[itemsCount];
+        int[] capacities = new int[resourcesCount];
+        
+        for(int k = 0; k < instancesCount; k++)
+        {
+            long instanceSeed = instanceSeed(k);
+            computeTotals(instanceSeed, profits, capacities);
+            
+            writer.writeInt(itemsCount);
+            writer.writeByte(' ');
+            writer.writeInt(resourcesCount);
+            writer.writeByte(' ');
+            writer.writeInt(0);
+            writer.writeByte('\n');
+            writer.writeRow(profits);
+            
+            for(int i = 0; i < resourcesCount; i++)
+            {
+                for(int j = 0; j < itemsCount; j++)
+                    writer.writeRowEntry(weight(instanceSeed, j, i), j, itemsCount);
+            }
+            
+            writer.writeRow(capacities);
+        }
+        
+        writer.flush();
+    }
+    
+    public void writeBinary(OutputStream output, int instancesCount) throws IOException
+    {
+        if(instancesCount <= 0)
+            throw new IllegalArgumentException("Wrong instances count: " + instancesCount);
+        
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        dos.writeInt(BINARY_MAGIC);
+        dos.writeInt(instancesCount);
+        
+        int[] profits = new int[itemsCount];
+        int[] capacities = new int[resourcesCount];
+        
+        for(int k = 0; k < instancesCount; k++)
+        {
+            long instanceSeed = instanceSeed(k);
+            computeTotals(instanceSeed, profits, capacities);
+            
+            dos.writeInt(itemsCount);
+            dos.writeInt(resourcesCount);
+            
+            for(int j = 0; j < itemsCount; j++)
+                dos.writeInt(profits[j]);
+            
+            for(int i = 0; i < resourcesCount; i++)
+            {
+                for(int j = 0; j < itemsCount; j++)
+                    dos.writeInt(weight(instanceSeed, j, i));
+            }
+            
+            for(int i = 0; i < resourcesCount; i++)
+                dos.writeInt(capacities[i]);
+        }
+        
+        dos.flush();
+    }
+    
+    private static final class TextWriter
+    {
+        private static final int ENTRIES_PER_LINE = 16;
+        
+        private final OutputStream output;
+        private final byte[] buffer = new byte[1 << 16];
+        private final byte[] digits = new byte[11];
+        private int pos;
+
+        public TextWriter(OutputStream output)
+        {
+            this.output = output;
+        }
+        
+        public void writeByte(int b) throws IOException
+        {
+            if(pos == buffer.length)
+                flushBuffer();
+            
+            buffer[pos++] = (byte)b;
+        }
+        
+        public void writeInt(int value) throws IOException
+        {
+            if(value < 0)
+            {
+                writeByte('-');
+                value = -value;
+            }
+            
+            int count = 0;
+            
+            do
+            {
+                digits[count++] = (byte)('0' + value % 10);
+                value /= 10;
+            }
+            while(value > 0);
+            
+            while(count > 0)
+                writeByte(digits[--count]);
+        }
+        
+        public void writeRowEntry(int value, int index, int rowLength) throws IOException
+        {
+            writeInt(value);
+            writeByte(index == rowLength - 1 || index % ENTRIES_PER_LINE == ENTRIES_PER_LINE - 1 ? '\n' : ' ');
+        }
+        
+        public void writeRow(int[] values) throws IOException
+        {
+            for(int i = 0; i < values.length; i++)
+                writeRowEntry(values[i], i, values.length);
+        }
+        
+        private void flushBuffer() throws IOException
+        {
+            output.write(buffer, 0, pos);
+            pos = 0;
+        }
+        
+        public void flush() throws IOException
+        {
+            flushBuffer();
+            output.flush();
+        }
+    }
+    
+    /**
+     * Usage: {@code <items> <resources> <tightness> <seed> <instances> <file> [text|binary]}
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 6)
+        {
+            System.err.println("Usage: <items> <resources> <tightness> <seed> <instances> <file> [text|binary]");
+            System.exit(1);
+        }
+        
+        MKPInstanceGenerator generator = new MKPInstanceGenerator(
+            Integer.parseInt(args[0]), 
+            Integer.parseInt(args[1]), 
+            Double.parseDouble(args[2]), 
+            Long.parseLong(args[3])
+        );
+        
+        int instancesCount = Integer.parseInt(args[4]);
+        boolean binary = args.length > 6 && args[6].equals("binary");
+        
+        try(OutputStream output = new FileOutputStream(args[5]))
+        {
+            if(binary)
+                generator.writeBinary(output, instancesCount);
+            else
+                generator.writeText(output, instancesCount);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package hmod.domains.mkp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Byte offsets of the instances of an uncompressed multi-instance file, which
+ * allow parsing any of them directly, and several of them in parallel. The 
+ * index can be persisted in a sidecar file next to the instances file 
+ * ({@value #SIDECAR_SUFFIX} appended to its name), which is discarded when 
+ * the size or modification time of the instances file change.
+ * 
+ * @author Enrique Urra C.
+ */
+final class MKPInstanceIndex
+{
+    public static final String SIDECAR_SUFFIX = ".idx";
+    public static final int MAGIC = 0x4D4B5049;
+    public static final int VERSION = 1;
+    
+    private final Path file;
+    private final long fileSize;
+    private final long fileModified;
+    private final long[] offsets;
+
+    private MKPInstanceIndex(Path file, long fileSize, long fileModified, long[] offsets)
+    {
+        this.file = file;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+        this.offsets = offsets;
+    }
+    
+    private static Path sidecarOf(Path file)
+    {
+        return file.resolveSibling(file.getFileName() + SIDECAR_SUFFIX);
+    }
+    
+    /**
+     * Indexes a file with a full scan of its entries.
+     */
+    public static MKPInstanceIndex build(Path file) throws IOException
+    {
+        long fileSize = Files.size(file);
+        long fileModified = Files.getLastModifiedTime(file).toMillis();
+        
+        try(InputStream input = Files.newInputStream(file))
+        {
+            return new MKPInstanceIndex(file, fileSize, fileModified, new MKPParser().indexInstances(input));
+        }
+    }
+    
+    /**
+     * Reads the sidecar index of a file.
+     * @return the index, or null if there is no sidecar, or it is out of date,
+     * truncated or not an index file, so that the index is rebuilt
+     */
+    public static MKPInstanceIndex loadSidecar(Path file) throws IOException
+    {
+        Path sidecar = sidecarOf(file);
+        
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar))))
+        {
+            if(input.readInt() != MAGIC || input.readInt() != VERSION)
+                return null;
+            
+            long fileSize = input.readLong();
+            long fileModified = input.readLong();
+            
+            if(fileSize != Files.size(file) || fileModified != Files.getLastModifiedTime(file).toMillis())
+                return null;
+            
+            int count = input.readInt();
+            
+            if(count < 0 || count > fileSize)
+                return null;
+            
+            long[] offsets = new long[count];
+            
+            for(int i = 0; i < count; i++)
+            {
+                offsets[i] = input.readLong();
+                
+                if(offsets[i] < 0 || offsets[i] >= fileSize)
+                    return null;
+            }
+            
+            return new MKPInstanceIndex(file, fileSize, fileModified, offsets);
+        }
+        catch(NoSuchFileException | EOFException ex)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Gets the index of a file from its sidecar, or builds it and tries to 
+     * persist it when the sidecar is missing or out of date.
+     */
+    public static MKPInstanceIndex load(Path file) throws IOException
+    {
+        MKPInstanceIndex index = loadSidecar(file);
+        
+        if(index != null)
+            return index;
+        
+        index = build(file);
+        
+        try
+        {
+            index.save();
+        }
+        catch(IOException ex)
+        {
+            // A read-only location only prevents reusing the index later
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Writes the sidecar file, through a temporary file that is then moved 
+     * over it.
+     */
+    public void save() throws IOException
+    {
+        Path sidecar = sidecarOf(file);
+        Path tmp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fileSize);
+            output.writeLong(fileModified);
+            output.writeInt(offsets.length);
+            
+            for(int i = 0; i < offsets.length; i++)
+                output.writeLong(offsets[i]);
+        }
+        
+        Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    public Path getFile()
+    {
+        return file;
+    }
+    
+    public int getInstancesCount()
+    {
+        return offsets.length;
+    }
+    
+    public long getOffset(int instanceNumber) throws IndexOutOfBoundsException
+    {
+        if(instanceNumber < 0 || instanceNumber >= offsets.length)
+            throw new IndexOutOfBoundsException("Wrong instance number: " + instanceNumber);
+        
+        return offsets[instanceNumber];
+    }
+    
+    public MKPProblemInstance parse(int instanceNumber) throws IOException, IndexOutOfBoundsException
+    {
+        return new MKPParser().parseAt(file, getOffset(instanceNumber), instanceNumber);
+    }
+    
+    /**
+     * Parses the provided instances concurrently, each one through its own
+     * channel over the file.
+     * @return the instances, in the same order as the provided numbers
+     */
+    public MKPProblemInstance[] parse(int[] instanceNumbers, int threads) throws IOException, InterruptedException, IndexOutOfBoundsException
+    {
+        if(threads <= 0)
+            throw new IllegalArgumentException("Wrong threads count: " + threads);
+        
+        for(int i = 0; i < instanceNumbers.length; i++)
+            getOffset(instanceNumbers[i]);
+        
+        MKPProblemInstance[] instances = new MKPProblemInstance[instanceNumbers.length];
+        
+        if(instanceNumbers.length == 0)
+            return instances;
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, instanceNumbers.length));
+        
+        try
+        {
+            List<Callable<MKPProblemInstance>> tasks = new ArrayList<>(instanceNumbers.length);
+            
+            for(int i = 0; i < instanceNumbers.length; i++)
+            {
+                int instanceNumber = instanceNumbers[i];
+                tasks.add(() -> parse(instanceNumber));
+            }
+            
+            List<Future<MKPProblemInstance>> futures = executor.invokeAll(tasks);
+            
+            for(int i = 0; i < instances.length; i++)
+                instances[i] = futures.get(i).get();
+            
+            return instances;
+        }
+        catch(ExecutionException ex)
+        {
+            if(ex.getCause() instanceof IOException)
+                throw (IOException)ex.getCause();
+            
+            throw new IOException("Error parsing the instances of '" + file + "'", ex.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
+    public MKPProblemInstance[] parseAll(int threads) throws IOException, InterruptedException
+    {
+        int[] numbers = new int[offsets.length];
+        
+        for(int i = 0; i < numbers.length; i++)
+            numbers[i] = i;
+        
+        return parse(numbers, threads);
+    }
+}
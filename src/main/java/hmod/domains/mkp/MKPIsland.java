@@ -0,0 +1,397 @@
+package hmod.domains.mkp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import optefx.util.output.OutputConfig;
+import optefx.util.output.OutputManager;
+
+/**
+ * Island of a multi-process search: migrates the best solution of its 
+ * tracker to a set of peer islands over TCP, and receives theirs. Each 
+ * message is a length-prefixed {@link MKPCheckpoint} of one solution, so it 
+ * travels as a bitset and carries the fingerprint of the instance; messages
+ * of other instances are rejected.
+ * <p>
+ * Emigration runs periodically on a background thread, sending the current 
+ * best solution to every peer that has not received it (peers that are not 
+ * reachable yet are retried on the next period). Immigrants are offered to 
+ * the local tracker and kept until the search takes them with 
+ * {@link #importImmigrant(SolutionBuilderHandler)}. Unix-domain sockets need 
+ * Java 16, so only TCP (e.g. over the loopback) is supported.
+ * <p>
+ * Sends block while a peer does not read, since socket writes have no 
+ * timeout; {@link #close()} closes the peer sockets first, which makes any
+ * pending send fail instead of waiting for it.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPIsland implements AutoCloseable
+{
+    private static final int CONNECT_TIMEOUT = 1000;
+    
+    private final class Peer
+    {
+        private final InetSocketAddress address;
+        private volatile Socket socket;
+        private DataOutputStream output;
+        private MKPSolution lastSent;
+
+        public Peer(InetSocketAddress address)
+        {
+            this.address = address;
+        }
+        
+        private void send(MKPSolution solution, byte[] message)
+        {
+            if(solution == lastSent)
+                return;
+            
+            try
+            {
+                if(socket == null)
+                {
+                    socket = new Socket();
+                    
+                    // Either this check or the sweep of close() sees the socket
+                    if(closed)
+                        throw new SocketException("Island closed");
+                    
+                    socket.setTcpNoDelay(true);
+                    socket.connect(address, CONNECT_TIMEOUT);
+                    output = new DataOutputStream(socket.getOutputStream());
+                }
+                
+                output.writeInt(message.length);
+                output.write(message);
+                output.flush();
+                lastSent = solution;
+                sentCount.incrementAndGet();
+            }
+            catch(IOException ex)
+            {
+                disconnect();
+            }
+        }
+        
+        private void disconnect()
+        {
+            closeQuietly(socket);
+            socket = null;
+            output = null;
+        }
+    }
+    
+    private final MKPProblemInstance instance;
+    private final BestSolutionTracker tracker;
+    private final ServerSocket server;
+    private final List<Peer> peers;
+    private final int maxMessageLength;
+    private final ScheduledExecutorService emigration;
+    private final ExecutorService immigration;
+    private final List<Socket> accepted = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicReference<MKPSolution> immigrant = new AtomicReference<>();
+    private final AtomicInteger sentCount = new AtomicInteger();
+    private final AtomicInteger receivedCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Starts the island.
+     * @param bindAddress the address where immigrants are received
+     * @param peers the addresses of the islands receiving the emigrants
+     * @param periodMillis the period of the emigration
+     */
+    public MKPIsland(MKPProblemInstance instance, BestSolutionTracker tracker, InetSocketAddress bindAddress, List<InetSocketAddress> peers, long periodMillis) throws IOException
+    {
+        if(instance == null)
+            throw new NullPointerException("Null instance");
+        
+        if(tracker == null)
+            throw new NullPointerException("Null tracker");
+        
+        if(periodMillis <= 0)
+            throw new IllegalArgumentException("Wrong migration period: " + periodMillis);
+        
+        this.instance = instance;
+        this.tracker = tracker;
+        this.peers = new ArrayList<>(peers.size());
+        this.maxMessageLength = (int)MKPCheckpoint.checkpointSize(instance.getItemsCount(), instance.getResourcesCount(), 1);
+        
+        for(InetSocketAddress address : peers)
+            this.peers.add(new Peer(address));
+        
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(bindAddress);
+        
+        this.immigration = Executors.newCachedThreadPool((r) -> {
+            Thread thread = new Thread(r, "mkp-island-immigration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        this.emigration = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread thread = new Thread(r, "mkp-island-emigration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        immigration.execute(this::acceptPeers);
+        emigration.scheduleWithFixedDelay(this::emigrate, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private static void closeQuietly(AutoCloseable closeable)
+    {
+        if(closeable == null)
+            return;
+        
+        try
+        {
+            closeable.close();
+        }
+        catch(Exception ex)
+        {
+        }
+    }
+    
+    private void warn(String message)
+    {
+        PrintWriter pw = OutputManager.getCurrent().getOutput(MKPOutputIds.WARNINGS);
+
+        if(pw != null)
+            pw.println("Warning: " + message);
+    }
+    
+    private void acceptPeers()
+    {
+        while(!closed)
+        {
+            try
+            {
+                Socket socket = server.accept();
+                accepted.add(socket);
+                immigration.execute(() -> receive(socket));
+            }
+            catch(IOException ex)
+            {
+                if(!closed)
+                    warn("island accept failed: " + ex.getMessage());
+            }
+        }
+    }
+    
+    private void receive(Socket socket)
+    {
+        try(DataInputStream input = new DataInputStream(socket.getInputStream()))
+        {
+            byte[] buffer = new byte[maxMessageLength];
+            
+            while(!closed)
+            {
+                int length = input.readInt();
+                
+                if(length <= 0 || length > maxMessageLength)
+                    throw new IOException("Wrong message length: " + length);
+                
+                input.readFully(buffer, 0, length);
+                
+                // Profit, usage and feasibility are recomputed from the bitset 
+                // against the local instance, not taken from the message
+                for(MKPSolution solution : MKPCheckpoint.read(new ByteArrayInputStream(buffer, 0, length), instance))
+                {
+                    if(!solution.isFeasible())
+                        throw new IOException("Infeasible immigrant");
+                    
+                    receivedCount.incrementAndGet();
+                    immigrant.accumulateAndGet(solution, (curr, next) -> curr == null || next.getTotalProfit() > curr.getTotalProfit() ? next : curr);
+                    tracker.offer(solution);
+                }
+            }
+        }
+        catch(IOException ex)
+        {
+            if(!closed && !(ex instanceof EOFException))
+                warn("island migration from " + socket.getRemoteSocketAddress() + " dropped: " + ex.getMessage());
+        }
+        finally
+        {
+            accepted.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+    
+    private synchronized void emigrate()
+    {
+        if(closed || !tracker.isBestSolutionSet())
+            return;
+        
+        MKPSolution best = tracker.getBestSolution();
+        
+        if(!best.isFeasible())
+            return;
+        
+        byte[] message;
+        
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(maxMessageLength);
+            MKPCheckpoint.write(bytes, instance, Collections.singletonList(best));
+            message = bytes.toByteArray();
+        }
+        catch(IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        
+        for(Peer peer : peers)
+            peer.send(best, message);
+    }
+    
+    /**
+     * Sends the current best solution to the peers that do not have it yet,
+     * without waiting for the next period.
+     */
+    public void flush()
+    {
+        emigrate();
+    }
+    
+    /**
+     * Takes the best pending immigrant.
+     * @return the immigrant, or null if none has arrived since the last call
+     */
+    public MKPSolution pollImmigrant()
+    {
+        return immigrant.getAndSet(null);
+    }
+    
+    /**
+     * Loads the best pending immigrant in a builder, if it improves the 
+     * current build (or the build is infeasible).
+     * @return true if the immigrant was loaded
+     */
+    public boolean importImmigrant(SolutionBuilderHandler builder)
+    {
+        MKPSolution solution = pollImmigrant();
+        
+        if(solution == null || (builder.isFeasible() && solution.getTotalProfit() <= builder.getTotalProfit()))
+            return false;
+        
+        builder.importSolution(solution);
+        return true;
+    }
+    
+    public int getPort()
+    {
+        return server.getLocalPort();
+    }
+    
+    public int getSentCount()
+    {
+        return sentCount.get();
+    }
+    
+    public int getReceivedCount()
+    {
+        return receivedCount.get();
+    }
+
+    @Override
+    public void close()
+    {
+        if(closed)
+            return;
+        
+        closed = true;
+        emigration.shutdownNow();
+        closeQuietly(server);
+        
+        // Without taking the lock, which a blocked send may hold
+        for(Peer peer : peers)
+            closeQuietly(peer.socket);
+        
+        synchronized(accepted)
+        {
+            for(Socket socket : accepted)
+                closeQuietly(socket);
+        }
+        
+        immigration.shutdownNow();
+    }
+    
+    /**
+     * Runs a standalone island: adaptive large neighbourhood search on one 
+     * instance, importing immigrants between search slices. The final best 
+     * profit and migration counts are reported to 
+     * {@link MKPOutputIds#ISLAND_RESULTS}, which is sent to the standard 
+     * output along with the warnings.
+     * <p>
+     * Arguments: {@code <file>:<instance> <port> <peers> <seconds> [<bind host>]},
+     * where the peers are a comma-separated list of {@code host:port}, or 
+     * {@code -}. Without a bind host, the island listens on all the local 
+     * addresses.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 4 || args.length > 5)
+        {
+            System.err.println("Usage: MKPIsland <file>:<instance> <port> <host:port,...|-> <seconds> [<bind host>]");
+            System.exit(1);
+        }
+        
+        OutputManager.getCurrent().setOutputsFromConfig(new OutputConfig().
+                addSystemOutputId(MKPOutputIds.ISLAND_RESULTS).
+                addSystemOutputId(MKPOutputIds.WARNINGS)
+        );
+        
+        String[] instanceInfo = args[0].split(":");
+        int port = Integer.parseInt(args[1]);
+        InetSocketAddress bindAddress = args.length > 4 ? new InetSocketAddress(args[4], port) : new InetSocketAddress(port);
+        List<InetSocketAddress> peers = new ArrayList<>();
+        long deadline = System.nanoTime() + (long)(Double.parseDouble(args[3]) * 1e9);
+        
+        if(!args[2].equals("-"))
+        {
+            for(String peer : args[2].split(","))
+            {
+                int sep = peer.lastIndexOf(':');
+                peers.add(new InetSocketAddress(peer.substring(0, sep), Integer.parseInt(peer.substring(sep + 1))));
+            }
+        }
+        
+        ProblemInstanceHandler pih = new ProblemInstanceHandler(instanceInfo[0], Integer.parseInt(instanceInfo[1]), null);
+        BestSolutionTracker tracker = new BestSolutionTracker();
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(pih);
+        MKPAdaptiveLNS alns = new MKPAdaptiveLNS(builder, pih);
+        builder.fillRandomly();
+        
+        try(MKPIsland island = new MKPIsland(pih, tracker, bindAddress, peers, 100))
+        {
+            while(System.nanoTime() < deadline)
+            {
+                island.importImmigrant(builder);
+                alns.run(Long.MAX_VALUE, 50, tracker);
+            }
+            
+            island.flush();
+            OutputManager.println(MKPOutputIds.ISLAND_RESULTS, "best=" + tracker.getBestProfit() + " sent=" + island.getSentCount() + " received=" + island.getReceivedCount());
+        }
+    }
+}
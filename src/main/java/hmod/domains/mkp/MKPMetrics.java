@@ -0,0 +1,135 @@
+package hmod.domains.mkp;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and sampled timers of the domain hot operations. Every call is
+ * counted, but only one out of {@code 2^samplingBits} calls of each operation
+ * is timed, and the total time is estimated from the sampled mean. When the
+ * metrics are disabled no instance exists and the operators skip it entirely.
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPMetrics
+{
+    public enum Operation
+    {
+        FEASIBILITY_CHECK(6),
+        INCLUDE(6),
+        EXCLUDE(6),
+        BUILD(0),
+        FILL(0),
+        REMOVE(0),
+        SAVE(0);
+        
+        private final int samplingMask;
+
+        private Operation(int samplingBits)
+        {
+            this.samplingMask = (1 << samplingBits) - 1;
+        }
+    }
+    
+    /**
+     * Value returned by {@link #begin(Operation)} for the calls that are not 
+     * timed; {@link System#nanoTime()} can be zero or negative, so it is not 
+     * a valid sentinel.
+     */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+    
+    private static final Operation[] OPERATIONS = Operation.values();
+    
+    private final LongAdder[] counts = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] sampledCounts = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] sampledNanos = new LongAdder[OPERATIONS.length];
+    // Racy on purpose, it only decides which calls are sampled
+    private final int[] ticks = new int[OPERATIONS.length];
+
+    public MKPMetrics()
+    {
+        for(int i = 0; i < OPERATIONS.length; i++)
+        {
+            counts[i] = new LongAdder();
+            sampledCounts[i] = new LongAdder();
+            sampledNanos[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * @return the start time if this call is sampled, {@link #NOT_SAMPLED} 
+     * otherwise
+     */
+    public long begin(Operation op)
+    {
+        int i = op.ordinal();
+        counts[i].increment();
+        
+        if((ticks[i]++ & op.samplingMask) != 0)
+            return NOT_SAMPLED;
+        
+        return System.nanoTime();
+    }
+    
+    /**
+     * Counts calls that the fused operators make in bulk. They are not timed,
+     * so the estimated total assumes the mean of the timed calls.
+     */
+    public void add(Operation op, long calls)
+    {
+        counts[op.ordinal()].add(calls);
+    }
+    
+    public void end(Operation op, long start)
+    {
+        if(start == NOT_SAMPLED)
+            return;
+        
+        int i = op.ordinal();
+        sampledNanos[i].add(System.nanoTime() - start);
+        sampledCounts[i].increment();
+    }
+    
+    public long getCount(Operation op)
+    {
+        return counts[op.ordinal()].sum();
+    }
+    
+    long getSampledCount(Operation op)
+    {
+        return sampledCounts[op.ordinal()].sum();
+    }
+    
+    public double getMeanNanos(Operation op)
+    {
+        int i = op.ordinal();
+        long sampled = sampledCounts[i].sum();
+        
+        return sampled == 0 ? 0.0 : (double)sampledNanos[i].sum() / sampled;
+    }
+    
+    public double getEstimatedTotalMillis(Operation op)
+    {
+        return getMeanNanos(op) * getCount(op) / 1e6;
+    }
+    
+    public void reset()
+    {
+        for(int i = 0; i < OPERATIONS.length; i++)
+        {
+            counts[i].reset();
+            sampledCounts[i].reset();
+            sampledNanos[i].reset();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(String.format("%-18s %14s %14s %14s%n", "Operation", "Count", "Mean (ns)", "Total (ms)"));
+        
+        for(Operation op : OPERATIONS)
+            sb.append(String.format("%-18s %14d %14.1f %14.3f%n", op, getCount(op), getMeanNanos(op), getEstimatedTotalMillis(op)));
+        
+        return sb.toString();
+    }
+}
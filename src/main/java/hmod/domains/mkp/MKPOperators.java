@@ -6,6 +6,12 @@ import hmod.core.Condition;
 import hmod.core.Statement;
 import hmod.solvers.common.IterationHandler;
 import hmod.solvers.common.MutableIterationHandler;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import optefx.util.output.OutputManager;
 import optefx.util.random.RandomTool;
 
@@ -19,8 +25,8 @@ public final class MKPOperators
     {
         return () -> {
             int count = itemListHandler.getItemCount();
-            Item selected = itemListHandler.getItemAt(RandomTool.getInt(count));
-            selectedItemHandler.selectItem(selected);
+            int selected = itemListHandler.getIdAt(RandomTool.getInt(count));
+            selectedItemHandler.selectTrusted(selected);
         }; 
     }
     
@@ -28,17 +34,28 @@ public final class MKPOperators
     {
         return () -> {
             int itemCount = itemListHandler.getItemCount();
-            Item selected = null;
+            
+            if(itemCount == 0)
+            {
+                selectedItemHandler.clear();
+                return;
+            }
+            
+            int selected = 0;
+            int selectedProfit = itemListHandler.getProfitAt(0);
 
-            for(int i = 0; i < itemCount; i++)
+            for(int i = 1; i < itemCount; i++)
             {
-                Item currItem = itemListHandler.getItemAt(i);
+                int currProfit = itemListHandler.getProfitAt(i);
 
-                if(selected == null || selected.getProfit() < currItem.getProfit())
-                    selected = currItem;
+                if(selectedProfit < currProfit)
+                {
+                    selected = i;
+                    selectedProfit = currProfit;
+                }
             }
 
-            selectedItemHandler.selectItem(selected);
+            selectedItemHandler.selectTrusted(itemListHandler.getIdAt(selected));
         };
     }
     
@@ -46,25 +63,35 @@ public final class MKPOperators
     {
         return () -> {
             int itemCount = itemListHandler.getItemCount();
-            Item selected = null;
+            
+            if(itemCount == 0)
+            {
+                selectedItemHandler.clear();
+                return;
+            }
+            
+            int selected = 0;
+            int selectedProfit = itemListHandler.getProfitAt(0);
 
-            for(int i = 0; i < itemCount; i++)
+            for(int i = 1; i < itemCount; i++)
             {
-                Item currItem = itemListHandler.getItemAt(i);
+                int currProfit = itemListHandler.getProfitAt(i);
 
-                if(selected == null || selected.getProfit() > currItem.getProfit())
-                    selected = currItem;
+                if(selectedProfit > currProfit)
+                {
+                    selected = i;
+                    selectedProfit = currProfit;
+                }
             }
 
-            selectedItemHandler.selectItem(selected);
+            selectedItemHandler.selectTrusted(itemListHandler.getIdAt(selected));
         };
     }
     
     public static Statement removeSelectedItemFromList(SelectedItemHandler selectedItemHandler, ItemListHandler itemListHandler)
     {
         return () -> {
-            Item item = selectedItemHandler.getSelected();
-            itemListHandler.removeItem(item);
+            itemListHandler.removeId(selectedItemHandler.getSelectedId());
         };
     }
     
@@ -92,68 +119,85 @@ public final class MKPOperators
         solutionBuilderHandler.importSolution(solution);
     }
     
+    public Statement fusedRandomFill()
+    {
+        return solutionBuilderHandler::fillRandomly;
+    }
+    
+    /**
+     * Random fill consuming the random stream as the flowchart version built 
+     * with {@link #selectRandomItemInList}, for reproducing earlier runs.
+     */
+    public Statement fusedOrderedRandomFill()
+    {
+        return solutionBuilderHandler::fillRandomlyInOrder;
+    }
+    
+    public Statement fusedGreedyFill()
+    {
+        return solutionBuilderHandler::fillGreedily;
+    }
+    
     public Statement storeAvailableItemsInList(ItemListHandler itemListHandler)
     {
         return () -> {
-            Item[] itemsArray = solutionBuilderHandler.getAvailableItems();
+            int[] itemsArray = solutionBuilderHandler.getAvailableIds();
 
             if(itemsArray.length == 0)
                 throw new IllegalStateException("No available items exist for storing");
 
             for(int i = 0; i < itemsArray.length; i++)
-                itemListHandler.addItem(itemsArray[i]);
+                itemListHandler.addTrusted(itemsArray[i]);
         };
     }
     
     public Statement storeCurrentItemsInList(ItemListHandler itemListHandler)
     {
         return () -> {
-            Item[] itemsArray = solutionBuilderHandler.getIncludedItems();
+            int[] itemsArray = solutionBuilderHandler.getIncludedIds();
 
             for(int i = 0; i < itemsArray.length; i++)
-                itemListHandler.addItem(itemsArray[i]);
+                itemListHandler.addTrusted(itemsArray[i]);
         };
     }
     
     public Statement selectRandomAvailableItemInBuild(SelectedItemHandler selectedItemHandler) throws AlgorithmException
     {
         return () -> {
-            Item[] available = solutionBuilderHandler.getAvailableItems();
+            int[] available = solutionBuilderHandler.getAvailableIds();
 
             if(available.length == 0)
                 throw new AlgorithmException("No available items in build");
 
-            Item selected = available[RandomTool.getInt(available.length)];
-            selectedItemHandler.selectItem(selected);
+            int selected = available[RandomTool.getInt(available.length)];
+            selectedItemHandler.selectTrusted(selected);
         };
     }
     
     public Statement selectRandomIncludedItemInBuild(SelectedItemHandler selectedItemHandler)
     {
         return () -> {
-            Item[] included = solutionBuilderHandler.getIncludedItems();
+            int[] included = solutionBuilderHandler.getIncludedIds();
 
             if(included.length == 0)
                 throw new AlgorithmException("No included items in build");
 
-            Item selected = included[RandomTool.getInt(included.length)];
-            selectedItemHandler.selectItem(selected);
+            int selected = included[RandomTool.getInt(included.length)];
+            selectedItemHandler.selectTrusted(selected);
         };
     }
     
     public Statement addSelectedItemToBuild(SelectedItemHandler selectedItemHandler)
     {
         return () -> {
-            Item selected = selectedItemHandler.getSelected();
-            solutionBuilderHandler.includeItem(selected);
+            solutionBuilderHandler.includeTrusted(selectedItemHandler.getSelectedId());
         };
     }
     
     public Statement removeSelectedItemFromBuild(SelectedItemHandler selectedItemHandler)
     {
         return () -> {
-            Item toRemove = selectedItemHandler.getSelected();
-            solutionBuilderHandler.excludeItem(toRemove);
+            solutionBuilderHandler.excludeTrusted(selectedItemHandler.getSelectedId());
         };  
     }
     
@@ -179,11 +223,40 @@ public final class MKPOperators
     public Condition checkFeasibleAdd(SelectedItemHandler itemHandler)
     {
         return () -> {
-            Item item = itemHandler.getSelected();
-            return solutionBuilderHandler.isIncludeFeasible(item);
+            return solutionBuilderHandler.isIncludeFeasibleTrusted(itemHandler.getSelectedId());
         };            
     }
     
+    public void exportConvergenceTrace(String file) throws AlgorithmException
+    {
+        ConvergenceTrace trace = solutionHandler.getConvergenceTrace();
+        
+        if(trace == null)
+            throw new AlgorithmException("No convergence trace has been recorded");
+        
+        try
+        {
+            if(file.endsWith(".csv"))
+            {
+                try(Writer writer = new BufferedWriter(new FileWriter(file)))
+                {
+                    trace.writeCsv(writer);
+                }
+            }
+            else
+            {
+                try(OutputStream output = new FileOutputStream(file))
+                {
+                    trace.writeBinary(output);
+                }
+            }
+        }
+        catch(IOException ex)
+        {
+            throw new AlgorithmException("Cannot export the convergence trace to '" + file + "'", ex);
+        }
+    }
+    
     public void reportSolution()
     {
         MKPSolution finalSolution = solutionHandler.getBestSolution();
@@ -12,5 +12,8 @@ public class MKPOutputIds
     public static final String NEW_SOLUTION_INFO = "mkp-new-solution-info";
     public static final String NEW_BEST_SOLUTION_INFO = "mkp-new-best-solution-info";
     public static final String FINAL_SOLUTION_INFO = "mkp-final-solution-info";
+    public static final String OPERATION_METRICS = "mkp-operation-metrics";
+    public static final String BATCH_RESULTS = "mkp-batch-results";
+    public static final String ISLAND_RESULTS = "mkp-island-results";
     public static final String WARNINGS = "hmod.domains.mkp.warnings";
 }
@@ -1,278 +1,540 @@
-
 package hmod.domains.mkp;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
+ * Streaming parser of multi-instance files. Numbers are read directly from
+ * a byte buffer over the input, which is transparently decompressed when it
+ * is gzipped, and parsing stops as soon as the requested instances are
+ * complete. Instances before the requested one are skipped without storing
+ * their data.
  *
  * @author Enrique Urra C.
  */
 class MKPParser
 {
-    private static final String separator = " +";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int GZIP_MAGIC = 0x8B1F;
     
-    private static final class InnerInstance implements MKPProblemInstance
+    @FunctionalInterface
+    private interface LPOptimumEntry
     {
-        private final int number;
-        private final ArrayList<Item> itemsList;
-        private final HashSet<Item> itemsSet;
-        private final ArrayList<Resource> resourcesList;
-        private final HashSet<Resource> resourcesSet;
-        private final HashMap<Integer, HashMap<Integer, Integer>> weightsMap;
-
-        public InnerInstance(int number, int itemsCount, int resourcesCount)
+        /**
+         * @return true to stop the scan
+         */
+        boolean accept(int resourcesNum, int itemsNum, int instanceNum, String value);
+    }
+    
+    /**
+     * A content error that is already tagged with its line, so it is not 
+     * wrapped again as a read failure.
+     */
+    private static final class LineException extends IOException
+    {
+        public LineException(NumberReader reader, String message)
         {
-            this.number = number;
-            this.itemsList = new ArrayList<>(itemsCount);
-            this.itemsSet = new HashSet<>(itemsCount);
-            this.resourcesList = new ArrayList<>(resourcesCount);
-            this.resourcesSet = new HashSet<>(resourcesCount);
-            this.weightsMap = new HashMap<>(resourcesCount);
+            super("[Line " + reader.getLineNumber() + "] " + message);
         }
-
-        @Override
-        public int getNumber()
+    }
+    
+    private static final class NumberReader
+    {
+        private final InputStream input;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+        private int lineNumber = 1;
+        private long consumed;
+        
+        public NumberReader(InputStream input)
         {
-            return number;
+            this.input = input;
         }
         
-        @Override
-        public int getItemsCount()
+        private int peek() throws IOException
         {
-            return itemsList.size();
+            if(pos == limit)
+            {
+                consumed += limit;
+                limit = input.read(buffer, 0, buffer.length);
+                pos = 0;
+                
+                if(limit <= 0)
+                {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            
+            return buffer[pos];
         }
-
-        @Override
-        public int getResourcesCount()
+        
+        private int skipSpaces() throws IOException
         {
-            return resourcesList.size();
+            int b;
+            
+            while((b = peek()) == ' ' || b == '\t' || b == '\r' || b == '\n')
+            {
+                if(b == '\n')
+                    lineNumber++;
+                
+                pos++;
+            }
+            
+            if(b == -1)
+                throw new EOFException();
+            
+            return b;
         }
-
-        @Override
-        public Item getItem(int itemId)
+        
+        public int nextInt() throws IOException
         {
-            if(itemId < 0 || itemId >= itemsList.size())
-                throw new IllegalArgumentException("Wrong item index: " + itemId);
-
-            return itemsList.get(itemId);
+            int b = skipSpaces();
+            boolean negative = b == '-';
+            
+            if(negative)
+            {
+                pos++;
+                b = peek();
+            }
+            
+            if(b < '0' || b > '9')
+                throw new NumberFormatException("Unexpected character '" + (char)b + "'");
+            
+            long value = 0;
+            
+            while(b >= '0' && b <= '9')
+            {
+                value = value * 10 + (b - '0');
+                
+                if(value > Integer.MAX_VALUE + 1L)
+                    throw new NumberFormatException("Integer out of range");
+                
+                pos++;
+                b = peek();
+            }
+            
+            if(b != -1 && b != ' ' && b != '\t' && b != '\r' && b != '\n')
+                throw new NumberFormatException("Unexpected character '" + (char)b + "'");
+            
+            if(negative)
+                value = -value;
+            
+            if(value > Integer.MAX_VALUE)
+                throw new NumberFormatException("Integer out of range");
+            
+            return (int)value;
         }
-
-        @Override
-        public Resource getResource(int resourceId)
+        
+        public String nextToken() throws IOException
         {
-            if(resourceId < 0 || resourceId >= resourcesList.size())
-                throw new IllegalArgumentException("Wrong resource index: " + resourceId);
-
-            return resourcesList.get(resourceId);
+            int b = skipSpaces();
+            StringBuilder sb = new StringBuilder();
+            
+            while(b != -1 && b != ' ' && b != '\t' && b != '\r' && b != '\n')
+            {
+                sb.append((char)b);
+                pos++;
+                b = peek();
+            }
+            
+            return sb.toString();
         }
-
-        @Override
-        public boolean itemExists(Item item)
+        
+        /**
+         * Discards the remaining entries of the current line.
+         */
+        public void skipLine() throws IOException
         {
-            return itemsSet.contains(item);
+            int b;
+            
+            while((b = peek()) != -1)
+            {
+                pos++;
+                
+                if(b == '\n')
+                {
+                    lineNumber++;
+                    return;
+                }
+            }
         }
-
-        @Override
-        public boolean resourceExists(Resource res)
+        
+        public void skipInts(long count) throws IOException
         {
-            return resourcesSet.contains(res);
+            for(long i = 0; i < count; i++)
+                nextInt();
         }
-
-        @Override
-        public void checkItem(Item item) throws IllegalArgumentException
+        
+        /**
+         * @return the position, in bytes from the start of the input, of the
+         * next entry
+         */
+        public long nextEntryPosition() throws IOException
         {
-            if(!itemExists(item))
-                throw new IllegalArgumentException("The item do not belongs to the problem instance");
+            skipSpaces();
+            return consumed + pos;
         }
-
-        @Override
-        public void checkResource(Resource res) throws IllegalArgumentException
+        
+        public int getLineNumber()
         {
-            if(!resourceExists(res))
-                throw new IllegalArgumentException("The resource do not belongs to the problem instance");
+            return lineNumber;
         }
-
-        @Override
-        public int getWeight(Item item, Resource resource)
+    }
+    
+    /**
+     * Wraps an input, decompressing it if it starts with the gzip magic
+     * number.
+     */
+    static InputStream decode(InputStream input) throws IOException
+    {
+        BufferedInputStream buffered = new BufferedInputStream(input, BUFFER_SIZE);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        
+        if(magic == GZIP_MAGIC)
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        
+        return buffered;
+    }
+    
+    /**
+     * Checks if a file starts with the gzip magic number.
+     */
+    public static boolean isCompressed(Path file) throws IOException
+    {
+        try(InputStream input = Files.newInputStream(file))
         {
-            if(!itemExists(item))
-                throw new IllegalArgumentException("The item '" + item.getId() + "' do not belongs to the instance.");
-
-            if(!resourceExists(resource))
-                throw new IllegalArgumentException("The resource '" + resource.getId() + "' do not belongs to the instance.");
-
-            return weightsMap.get(resource.getId()).get(item.getId());
+            return (input.read() | (input.read() << 8)) == GZIP_MAGIC;
         }
     }
     
-    private int lineNumber;
+    private static InputStream open(String file) throws IOException
+    {
+        try
+        {
+            return new FileInputStream(file);
+        }
+        catch(FileNotFoundException ex)
+        {
+            throw new IOException("Wrong data file", ex);
+        }
+    }
     
     public MKPProblemInstance[] parse(String file) throws IOException
     {
-        lineNumber = 0;
-        BufferedReader reader = null;
+        try(InputStream input = open(file))
+        {
+            return parse(input);
+        }
+    }
+    
+    public MKPProblemInstance parse(String file, int instanceNumber) throws IOException, IndexOutOfBoundsException
+    {
+        try(InputStream input = open(file))
+        {
+            return parse(input, instanceNumber);
+        }
+    }
+    
+    public MKPProblemInstance[] parse(ReadableByteChannel channel) throws IOException
+    {
+        return parse(Channels.newInputStream(channel));
+    }
+    
+    public MKPProblemInstance parse(ReadableByteChannel channel, int instanceNumber) throws IOException, IndexOutOfBoundsException
+    {
+        return parse(Channels.newInputStream(channel), instanceNumber);
+    }
+    
+    /**
+     * Parses all the instances of a stream. The stream is not closed.
+     */
+    public MKPProblemInstance[] parse(InputStream input) throws IOException
+    {
+        return parse(input, -1, -1);
+    }
+    
+    /**
+     * Parses a single instance of a stream, reading it only up to the end of
+     * that instance. The stream is not closed.
+     */
+    public MKPProblemInstance parse(InputStream input, int instanceNumber) throws IOException, IndexOutOfBoundsException
+    {
+        if(instanceNumber < 0)
+            throw new IndexOutOfBoundsException("Wrong instance number: " + instanceNumber);
+        
+        return parse(input, instanceNumber, instanceNumber)[0];
+    }
+    
+    private MKPProblemInstance[] parse(InputStream input, int first, int last) throws IOException
+    {
+        NumberReader reader = new NumberReader(decode(input));
         
         try
         {
-            reader = new BufferedReader(new FileReader(file));
-            int instancesCount = Integer.parseInt(processLine(reader)[0]);
-            InnerInstance[] instances = new InnerInstance[instancesCount];
+            int instancesCount = reader.nextInt();
+            reader.skipLine();
             
-            for(int i = 0; i < instancesCount; i++)
+            if(last >= instancesCount)
+                throw new IndexOutOfBoundsException("Wrong instance number: " + last);
+            
+            if(first < 0)
             {
-                String[] headers = processLine(reader);
-                int itemsCount = Integer.parseInt(headers[0]);
-                int resourcesCount = Integer.parseInt(headers[1]);                
-                instances[i] = new InnerInstance(i, itemsCount, resourcesCount);
-                
-                String[] itemProfits = processNextEntries(itemsCount, reader);
-
-                for(int j = 0; j < itemsCount; j++)
-                {
-                    Item newItem = new Item(j, Integer.parseInt(itemProfits[j]));
-
-                    instances[i].itemsList.add(newItem);
-                    instances[i].itemsSet.add(newItem);
-                }
-
-                for(int j = 0; j < resourcesCount; j++)
-                {
-                    HashMap<Integer, Integer> currMap = new HashMap<>();
-                    instances[i].weightsMap.put(j, currMap);
-                    String[] itemWeigths = processNextEntries(itemsCount, reader);
-
-                    for(int k = 0; k < itemsCount; k++)
-                        currMap.put(k, Integer.parseInt(itemWeigths[k]));
-                }
-
-                String[] constraints = processNextEntries(resourcesCount, reader);
-
-                for(int j = 0; j < resourcesCount; j++)
-                {
-                    Resource newRes = new Resource(j, Integer.parseInt(constraints[j]));
-
-                    instances[i].resourcesList.add(newRes);
-                    instances[i].resourcesSet.add(newRes);
-                }
+                first = 0;
+                last = instancesCount - 1;
+            }
+            
+            MKPProblemInstance[] instances = new MKPProblemInstance[last - first + 1];
+            
+            for(int i = 0; i <= last; i++)
+            {
+                if(i < first)
+                    skipInstance(reader);
+                else
+                    instances[i - first] = readInstance(reader, i);
             }
             
             return instances;
         }
-        catch(FileNotFoundException ex)
-        {
-            throw new IOException("Wrong data file", ex);
-        }
         catch(EOFException ex)
         {
             throw new IOException("Unexpected end of file", ex);
         }
-        catch(IOException ex)
+        catch(NumberFormatException ex)
         {
-            throw new IOException("[Line " + lineNumber + "] Error reading file", ex);
+            throw new IOException("[Line " + reader.getLineNumber() + "] Wrong number format", ex);
         }
-        catch(IndexOutOfBoundsException ex)
+        catch(LineException ex)
         {
-            throw new IOException("[Line " + lineNumber + "] Wrong number of entries", ex);
+            throw ex;
         }
-        catch(NumberFormatException ex)
+        catch(IOException ex)
+        {
+            throw new IOException("[Line " + reader.getLineNumber() + "] Error reading file", ex);
+        }
+    }
+    
+    private static void skipInstance(NumberReader reader) throws IOException
+    {
+        int itemsCount = reader.nextInt();
+        int resourcesCount = reader.nextInt();
+        reader.skipLine();
+        reader.skipInts(itemsCount + (long)itemsCount * resourcesCount + resourcesCount);
+    }
+    
+    private static MKPProblemInstance readInstance(NumberReader reader, int number) throws IOException
+    {
+        int itemsCount = reader.nextInt();
+        int resourcesCount = reader.nextInt();
+        reader.skipLine();
+        
+        if(itemsCount <= 0 || resourcesCount <= 0)
+            throw new LineException(reader, "Wrong instance size: " + itemsCount + " " + resourcesCount);
+        
+        if((long)itemsCount * resourcesCount > Integer.MAX_VALUE)
+            throw new LineException(reader, "The instance is too large to be parsed in memory");
+        
+        int[] profits = new int[itemsCount];
+        int[] weights = new int[itemsCount * resourcesCount];
+        int[] capacities = new int[resourcesCount];
+        
+        for(int j = 0; j < itemsCount; j++)
         {
-            throw new IOException("[Line " + lineNumber + "] Wrong number format", ex);
+            profits[j] = reader.nextInt();
+            
+            if(profits[j] < 0)
+                throw new LineException(reader, "Negative profit for item " + j + ": " + profits[j]);
         }
-        finally
+        
+        for(int j = 0; j < resourcesCount; j++)
         {
-            if(reader != null)
-                reader.close();
+            for(int k = 0; k < itemsCount; k++)
+                weights[k * resourcesCount + j] = reader.nextInt();
         }
+        
+        for(int j = 0; j < resourcesCount; j++)
+            capacities[j] = reader.nextInt();
+        
+        return ArrayProblemInstance.create(number, profits, capacities, weights);
     }
     
-    public double findLPOptimum(String file, int resourcesNum, int itemsNum, int instanceNum) throws IOException
+    /**
+     * Scans an uncompressed stream, returning the byte offset at which each 
+     * of its instances starts. The stream is not closed.
+     */
+    public long[] indexInstances(InputStream input) throws IOException
     {
-        lineNumber = 0;
-        BufferedReader reader = null;
+        InputStream decoded = decode(input);
+        
+        if(decoded instanceof GZIPInputStream)
+            throw new IOException("Compressed files cannot be indexed");
+        
+        NumberReader reader = new NumberReader(decoded);
         
         try
         {
-            reader = new BufferedReader(new FileReader(file));
-            int numInstances = Integer.parseInt(processLine(reader)[0]);
+            int instancesCount = reader.nextInt();
+            reader.skipLine();
+            long[] offsets = new long[instancesCount];
             
-            for(int i = 0; i < numInstances; i++)
+            for(int i = 0; i < instancesCount; i++)
             {
-                String[] splitted = processLine(reader);
-                String[] instanceNumSplit = splitted[0].split("-");
-                String[] itemsResourcesSplit = instanceNumSplit[0].split("\\.");
-                int checkResourcesNum = Integer.parseInt(itemsResourcesSplit[0]);
-                int checkItemsNum = Integer.parseInt(itemsResourcesSplit[1]);
-                int checkInstanceNum = Integer.parseInt(instanceNumSplit[1]);               
-                
-                if(checkResourcesNum == resourcesNum && checkItemsNum == itemsNum && checkInstanceNum == instanceNum)
-                    return Double.parseDouble(splitted[1]);
+                offsets[i] = reader.nextEntryPosition();
+                skipInstance(reader);
             }
+            
+            return offsets;
         }
-        catch(FileNotFoundException ex)
-        {
-            throw new IOException("Wrong data file", ex);
-        }
-        catch(IOException ex)
+        catch(EOFException ex)
         {
-            throw new IOException("[Line " + lineNumber + "] Error reading file", ex);
+            throw new IOException("Unexpected end of file", ex);
         }
-        catch(IndexOutOfBoundsException ex)
+        catch(NumberFormatException ex)
         {
-            throw new IOException("[Line " + lineNumber + "] Wrong number of entries", ex);
+            throw new IOException("[Line " + reader.getLineNumber() + "] Wrong number format", ex);
         }
-        catch(NumberFormatException ex)
+    }
+    
+    /**
+     * Parses the instance that starts at a byte offset of an uncompressed 
+     * file, as given by {@link #indexInstances(InputStream)}.
+     */
+    public MKPProblemInstance parseAt(Path file, long offset, int instanceNumber) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
         {
-            throw new IOException("[Line " + lineNumber + "] Wrong number format", ex);
+            channel.position(offset);
+            NumberReader reader = new NumberReader(Channels.newInputStream(channel));
+            
+            try
+            {
+                return readInstance(reader, instanceNumber);
+            }
+            catch(EOFException ex)
+            {
+                throw new IOException("Unexpected end of file", ex);
+            }
+            catch(NumberFormatException ex)
+            {
+                throw new IOException("[Offset " + offset + ", line " + reader.getLineNumber() + "] Wrong number format", ex);
+            }
         }
-        finally
+    }
+    
+    public double findLPOptimum(String file, int resourcesNum, int itemsNum, int instanceNum) throws IOException
+    {
+        try(InputStream input = open(file))
         {
-            if(reader != null)
-                reader.close();
+            return findLPOptimum(input, resourcesNum, itemsNum, instanceNum);
         }
+    }
+    
+    /**
+     * Looks for the LP optimum of an instance in a stream, stopping at its
+     * entry. The stream is not closed.
+     * @return the LP optimum, or -1 if it is not found
+     */
+    public double findLPOptimum(InputStream input, int resourcesNum, int itemsNum, int instanceNum) throws IOException
+    {
+        double[] lpOptimum = { -1.0 };
+        
+        scanLPOptimums(input, (checkResourcesNum, checkItemsNum, checkInstanceNum, value) -> {
+            if(checkResourcesNum != resourcesNum || checkItemsNum != itemsNum || checkInstanceNum != instanceNum)
+                return false;
+            
+            lpOptimum[0] = Double.parseDouble(value);
+            return true;
+        });
         
-        return -1.0;
+        return lpOptimum[0];
     }
     
-    private String[] processLine(BufferedReader reader) throws IOException
+    /**
+     * Reads every entry of an LP optimums file in a single pass, for looking
+     * up many instances. As with {@link #findLPOptimum}, the first entry of 
+     * an instance wins.
+     * @return the LP optimums, by {@link #lpOptimumKey(int, int, int)}
+     */
+    public Map<String, Double> readLPOptimums(String file) throws IOException
     {
-        lineNumber++;
-        String line = reader.readLine();
+        Map<String, Double> lpOptimums = new HashMap<>();
         
-        if(line == null)
-            throw new EOFException();
+        try(InputStream input = open(file))
+        {
+            scanLPOptimums(input, (resourcesNum, itemsNum, instanceNum, value) -> {
+                lpOptimums.putIfAbsent(lpOptimumKey(resourcesNum, itemsNum, instanceNum), Double.parseDouble(value));
+                return false;
+            });
+        }
         
-        return (line.trim()).split(separator);
+        return lpOptimums;
     }
     
-    private String[] processNextEntries(int entriesCount, BufferedReader reader) throws IOException
+    public static String lpOptimumKey(int resourcesNum, int itemsNum, int instanceNum)
     {
-        String[] entries = new String[entriesCount];
-        int counter = 0;
+        return resourcesNum + "." + itemsNum + "-" + instanceNum;
+    }
+    
+    private void scanLPOptimums(InputStream input, LPOptimumEntry entry) throws IOException
+    {
+        NumberReader reader = new NumberReader(decode(input));
         
-        while(counter < entriesCount)
+        try
         {
-            lineNumber++;
-            String line = reader.readLine();
-            
-            if(line == null)
-                throw new EOFException();
-            
-            String[] currLine = (line.trim()).split(separator);
+            int numInstances = reader.nextInt();
+            reader.skipLine();
             
-            for(int i = 0; i < currLine.length; i++)
+            for(int i = 0; i < numInstances; i++)
             {
-                entries[counter] = currLine[i];
-                counter++;
+                String name = reader.nextToken();
+                String value = reader.nextToken();
+                reader.skipLine();
+                
+                String[] instanceNumSplit = name.split("-");
+                String[] itemsResourcesSplit = instanceNumSplit[0].split("\\.");
+                int resourcesNum = Integer.parseInt(itemsResourcesSplit[0]);
+                int itemsNum = Integer.parseInt(itemsResourcesSplit[1]);
+                int instanceNum = Integer.parseInt(instanceNumSplit[1]);
+                
+                if(entry.accept(resourcesNum, itemsNum, instanceNum, value))
+                    return;
             }
         }
-        
-        return entries;
+        catch(EOFException ex)
+        {
+            throw new IOException("Unexpected end of file", ex);
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            throw new IOException("[Line " + reader.getLineNumber() + "] Wrong number of entries", ex);
+        }
+        catch(NumberFormatException ex)
+        {
+            throw new IOException("[Line " + reader.getLineNumber() + "] Wrong number format", ex);
+        }
+        catch(LineException ex)
+        {
+            throw ex;
+        }
+        catch(IOException ex)
+        {
+            throw new IOException("[Line " + reader.getLineNumber() + "] Error reading file", ex);
+        }
     }
 }
@@ -0,0 +1,293 @@
+package hmod.domains.mkp;
+
+import hmod.core.FlowchartFactory;
+import hmod.core.Statement;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import optefx.util.output.OutputManager;
+
+/**
+ * Runs several algorithm configurations (members) concurrently over the same
+ * instance. Each member gets its own domain and builder, and all of them 
+ * publish to a shared best solution tracker. The run ends when every member
+ * finishes, when a feasible solution reaches the target profit, or when the
+ * time budget is exhausted; the remaining members are then stopped, and 
+ * waited for during a bounded grace period before the result is built.
+ * <p>
+ * Stopping is cooperative: members see {@link MKPDomain#stopRequested()} 
+ * and have their threads interrupted, which ends the built-in searches, but
+ * a flowchart loop that checks neither keeps its thread until it finishes. 
+ * The members share the global random and output tools of the framework. 
+ * Any executor or thread factory can be used, including virtual threads 
+ * where the runtime provides them (Java 21 or later).
+ * 
+ * @author Enrique Urra C.
+ */
+public final class MKPPortfolio
+{
+    public static final class Result
+    {
+        private final MKPSolution bestSolution;
+        private final String winner;
+        private final boolean targetReached;
+        private final long elapsedMillis;
+
+        private Result(MKPSolution bestSolution, String winner, boolean targetReached, long elapsedMillis)
+        {
+            this.bestSolution = bestSolution;
+            this.winner = winner;
+            this.targetReached = targetReached;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public MKPSolution getBestSolution()
+        {
+            return bestSolution;
+        }
+
+        /**
+         * @return the name of the member that found the best solution, or null
+         * if a member still running after the grace period published it
+         */
+        public String getWinner()
+        {
+            return winner;
+        }
+
+        public boolean isTargetReached()
+        {
+            return targetReached;
+        }
+
+        public long getElapsedMillis()
+        {
+            return elapsedMillis;
+        }
+    }
+    
+    /**
+     * A solution published to the tracker and the member that found it.
+     */
+    private static final class Found
+    {
+        private final MKPSolution solution;
+        private final String member;
+
+        public Found(MKPSolution solution, String member)
+        {
+            this.solution = solution;
+            this.member = member;
+        }
+    }
+    
+    private static final class Member
+    {
+        private final String name;
+        private final MKPDomain.DefaultFillMethod fillMethod;
+        private final Function<MKPDomain, Statement> algorithm;
+
+        public Member(String name, MKPDomain.DefaultFillMethod fillMethod, Function<MKPDomain, Statement> algorithm)
+        {
+            this.name = name;
+            this.fillMethod = fillMethod;
+            this.algorithm = algorithm;
+        }
+    }
+    
+    /**
+     * Time given to the members to finish once they are asked to stop.
+     */
+    public static final long STOP_GRACE_MILLIS = 2000;
+    
+    private final ProblemInstanceHandler pih;
+    private final List<Member> members = new ArrayList<>();
+
+    public MKPPortfolio(String file, int instanceNumber, String lpOptimumsFile)
+    {
+        this(new ProblemInstanceHandler(file, instanceNumber, lpOptimumsFile));
+    }
+    
+    MKPPortfolio(ProblemInstanceHandler pih)
+    {
+        if(pih == null)
+            throw new NullPointerException("Null instance");
+        
+        this.pih = pih;
+    }
+    
+    /**
+     * Adds a member.
+     * @param name the name of the member, reported in the results
+     * @param fillMethod the fill method used by {@link MKPDomain#initSolution()}
+     * @param algorithm builds the flowchart of the member from its domain
+     * @return this portfolio
+     */
+    public MKPPortfolio addMember(String name, MKPDomain.DefaultFillMethod fillMethod, Function<MKPDomain, Statement> algorithm)
+    {
+        if(name == null || fillMethod == null || algorithm == null)
+            throw new NullPointerException("Null member data");
+        
+        members.add(new Member(name, fillMethod, algorithm));
+        return this;
+    }
+    
+    public int getMembersCount()
+    {
+        return members.size();
+    }
+    
+    /**
+     * Runs all the members, each one on its own platform thread.
+     * @see #run(int, long, ExecutorService)
+     */
+    public Result run(int targetProfit, long timeLimitMillis) throws InterruptedException
+    {
+        return run(targetProfit, timeLimitMillis, Executors.defaultThreadFactory());
+    }
+    
+    /**
+     * Runs all the members, each one on a thread of the provided factory.
+     * @see #run(int, long, ExecutorService)
+     */
+    public Result run(int targetProfit, long timeLimitMillis, ThreadFactory threadFactory) throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, members.size()), threadFactory);
+        
+        try
+        {
+            return run(targetProfit, timeLimitMillis, executor);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Runs all the members on the provided executor, which is not shut down.
+     * @param targetProfit the profit that ends the run when reached by a 
+     * feasible solution, or {@link Integer#MAX_VALUE} for none
+     * @param timeLimitMillis the time budget, or 0 for none
+     * @return the best solution found and the member that found it
+     */
+    public Result run(int targetProfit, long timeLimitMillis, ExecutorService executor) throws InterruptedException, IllegalStateException
+    {
+        if(members.isEmpty())
+            throw new IllegalStateException("The portfolio has no members");
+        
+        BestSolutionTracker tracker = new BestSolutionTracker();
+        ThreadLocal<String> currentMember = new ThreadLocal<>();
+        AtomicReference<Found> winner = new AtomicReference<>();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        AtomicInteger running = new AtomicInteger(members.size());
+        CountDownLatch finished = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(members.size());
+        AtomicBoolean[] claimed = new AtomicBoolean[members.size()];
+        List<MKPDomain> domains = new ArrayList<>(members.size());
+        List<Future<?>> futures = new ArrayList<>(members.size());
+        
+        // Listeners of concurrent improvements may run out of order, so the 
+        // most profitable one is kept rather than the last one
+        tracker.addListener((solution, timestamp) -> {
+            Found found = new Found(solution, currentMember.get());
+            winner.accumulateAndGet(found, (curr, next) -> curr == null || next.solution.getTotalProfit() > curr.solution.getTotalProfit() ? next : curr);
+            
+            if(tracker.isProfitReached(targetProfit))
+                finished.countDown();
+        });
+        
+        for(int k = 0; k < claimed.length; k++)
+            claimed[k] = new AtomicBoolean();
+        
+        long start = System.nanoTime();
+        
+        try
+        {
+            for(int k = 0; k < members.size(); k++)
+            {
+                Member member = members.get(k);
+                AtomicBoolean memberClaimed = claimed[k];
+                MKPDomain domain = MKPDomain.create(pih, new MutableSolutionHandler(tracker), member.fillMethod);
+                Statement statement = member.algorithm.apply(domain);
+                domains.add(domain);
+                
+                futures.add(executor.submit(() -> {
+                    // A member stopped before starting is already counted
+                    if(!memberClaimed.compareAndSet(false, true))
+                        return;
+                    
+                    currentMember.set(member.name);
+                    
+                    try
+                    {
+                        FlowchartFactory.run(statement);
+                    }
+                    catch(RuntimeException ex)
+                    {
+                        if(finished.getCount() > 0)
+                            failure.compareAndSet(null, ex);
+                    }
+                    finally
+                    {
+                        currentMember.remove();
+                        
+                        if(running.decrementAndGet() == 0)
+                            finished.countDown();
+                        
+                        stopped.countDown();
+                    }
+                }));
+            }
+            
+            if(timeLimitMillis > 0)
+                finished.await(timeLimitMillis, TimeUnit.MILLISECONDS);
+            else
+                finished.await();
+        }
+        finally
+        {
+            for(MKPDomain domain : domains)
+                domain.requestStop();
+            
+            for(Future<?> future : futures)
+                future.cancel(true);
+            
+            for(int k = 0; k < claimed.length; k++)
+            {
+                if(claimed[k].compareAndSet(false, true))
+                    stopped.countDown();
+            }
+        }
+        
+        boolean allStopped = stopped.await(STOP_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        
+        if(!tracker.isBestSolutionSet())
+            throw new IllegalStateException("No member has saved a solution", failure.get());
+        
+        PrintWriter pw = OutputManager.getCurrent().getOutput(MKPOutputIds.WARNINGS);
+        
+        if(failure.get() != null && pw != null)
+            pw.println("Warning: a portfolio member failed: " + failure.get());
+        
+        if(!allStopped && pw != null)
+            pw.println("Warning: some portfolio members did not stop within " + STOP_GRACE_MILLIS + " ms");
+        
+        MKPSolution best = tracker.getBestSolution();
+        Found found = winner.get();
+        String winnerName = found != null && found.solution == best ? found.member : null;
+        
+        return new Result(best, winnerName, tracker.isProfitReached(targetProfit), elapsed);
+    }
+}
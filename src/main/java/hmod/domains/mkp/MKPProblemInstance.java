@@ -18,6 +18,15 @@ public interface MKPProblemInstance
     void checkResource(Resource res) throws IllegalArgumentException;
     int getWeight(Item item, Resource resource);
     
+    /**
+     * @return the profit of an item given its id, without materializing the
+     * {@link Item} where the instance can avoid it
+     */
+    default int getProfit(int itemId)
+    {
+        return getItem(itemId).getProfit();
+    }
+    
     default double getLPOptimum()
     {
         return -1.0;
@@ -28,6 +37,18 @@ public interface MKPProblemInstance
         return false;
     }
     
+    /**
+     * @return floor of the LP optimum, an upper bound of the integer optimum,
+     * or {@link Integer#MAX_VALUE} if the LP optimum is not available
+     */
+    default int getIntegralBound()
+    {
+        if(!isLPOptimumAvailable())
+            return Integer.MAX_VALUE;
+        
+        return (int)Math.min(Integer.MAX_VALUE, Math.floor(getLPOptimum()));
+    }
+    
     default double getGapFor(double solutionValue)
     {
         if(!isLPOptimumAvailable())
@@ -37,6 +58,23 @@ public interface MKPProblemInstance
         return (lpOptimum - solutionValue) / lpOptimum;
     }
     
+    /**
+     * @return a 64-bit hash of the whole instance data, used for checking that
+     * persisted solutions belong to this instance
+     */
+    default long getFingerprint()
+    {
+        return HashUtils.fingerprint(this);
+    }
+    
+    /**
+     * @return the random 64-bit key of an item, used for maintaining Zobrist 
+     * hashes of solutions. It is called once per item on every hash, so 
+     * implementations must store the keys instead of deriving them from the
+     * fingerprint on each call (see {@link HashUtils#zobristKey(long, int)}).
+     */
+    long getZobristKey(int itemId);
+    
     default double getPorcentualGapFor(double solutionValue)
     {
         return getGapFor(solutionValue) * 100;
@@ -16,6 +16,26 @@ public interface MKPSolution
     int getItemsCount();
     boolean sameAs(MKPSolution other);
     
+    default int[] getItemIds()
+    {
+        Item[] items = getItems();
+        int[] ids = new int[items.length];
+        
+        for(int i = 0; i < items.length; i++)
+            ids[i] = items[i].getId();
+        
+        return ids;
+    }
+    
+    /**
+     * @return the Zobrist hash of the item set, equal for solutions with the
+     * same items
+     */
+    default long getHash()
+    {
+        return HashUtils.zobristHash(getInstance(), getItems());
+    }
+    
     default boolean isGapAvailable()
     {
         return getInstance().isLPOptimumAvailable();
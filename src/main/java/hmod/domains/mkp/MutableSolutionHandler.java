@@ -12,10 +12,62 @@ class MutableSolutionHandler implements SolutionHandler<MKPSolution>
 {
     private MKPSolution providedSolution;
     private MKPSolution toRetrieveSolution;
-    private MKPSolution bestSolution;
+    private final BestSolutionTracker bestSolutionTracker;
+    private ConvergenceTrace convergenceTrace;
+    private BestSolutionListener traceListener;
+    private boolean traceAllSaves;
+    private volatile long savesCount;
 
     public MutableSolutionHandler()
     {
+        this(new BestSolutionTracker());
+    }
+    
+    public MutableSolutionHandler(BestSolutionTracker bestSolutionTracker)
+    {
+        if(bestSolutionTracker == null)
+            throw new NullPointerException("Null best solution tracker");
+        
+        this.bestSolutionTracker = bestSolutionTracker;
+    }
+    
+    public BestSolutionTracker getBestSolutionTracker()
+    {
+        return bestSolutionTracker;
+    }
+    
+    public ConvergenceTrace getConvergenceTrace()
+    {
+        return convergenceTrace;
+    }
+    
+    /**
+     * Sets the trace of the search. Improvements are recorded from the best 
+     * solution tracker, so those published straight to it (by the genetic 
+     * algorithm, the ALNS or island immigrants) are traced too, with the 
+     * saves count of this handler at that time as their iteration. 
+     * @param traceAllSaves true to also record the saves that do not improve
+     * the best solution
+     */
+    public void setConvergenceTrace(ConvergenceTrace convergenceTrace, boolean traceAllSaves)
+    {
+        if(traceListener != null)
+            bestSolutionTracker.removeListener(traceListener);
+        
+        this.convergenceTrace = convergenceTrace;
+        this.traceAllSaves = traceAllSaves;
+        this.traceListener = null;
+        
+        if(convergenceTrace != null)
+        {
+            traceListener = (solution, timestamp) -> convergenceTrace.record(timestamp, savesCount, solution);
+            bestSolutionTracker.addListener(traceListener);
+        }
+    }
+    
+    public long getSavesCount()
+    {
+        return savesCount;
     }
     
     public MKPSolution getProvidedSolution() throws IllegalStateException
@@ -32,13 +84,18 @@ class MutableSolutionHandler implements SolutionHandler<MKPSolution>
         
         if(solution != null)
         {
+            long time = System.nanoTime();
+            savesCount++;
+            boolean improved = bestSolutionTracker.offer(solution);
+            
+            // Improvements are recorded by the tracker listener
+            if(convergenceTrace != null && traceAllSaves && !improved)
+                convergenceTrace.record(time, savesCount, solution);
+            
             OutputManager.println(MKPOutputIds.NEW_SOLUTION_INFO, "***********************\n\n" + toRetrieveSolution + "\n");
 
-            if(bestSolution == null || bestSolution.getTotalProfit() < toRetrieveSolution.getTotalProfit())
-            {
-                bestSolution = toRetrieveSolution;
-                OutputManager.println(MKPOutputIds.NEW_BEST_SOLUTION_INFO, "***********************\n\n" + bestSolution + "\n");
-            }
+            if(improved)
+                OutputManager.println(MKPOutputIds.NEW_BEST_SOLUTION_INFO, "***********************\n\n" + solution + "\n");
             
             PrintWriter pw = OutputManager.getCurrent().getOutput(MKPOutputIds.WARNINGS);
             
@@ -65,10 +122,7 @@ class MutableSolutionHandler implements SolutionHandler<MKPSolution>
     @Override
     public MKPSolution getBestSolution() throws IllegalStateException
     {
-        if(bestSolution == null)
-            throw new IllegalStateException("No best solution has been set");
-        
-        return bestSolution;
+        return bestSolutionTracker.getBestSolution();
     }
 
     @Override
@@ -0,0 +1,163 @@
+package hmod.domains.mkp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Instance with its weight matrix outside the heap, either in direct buffers
+ * or mapped read-only from a binary file written by 
+ * {@link MKPInstanceGenerator#writeBinary}. The matrix is split in segments 
+ * of 2^28 ints addressed with long offsets, so its size is not bounded by 
+ * the int range of a single buffer. Only the profits and capacities are kept
+ * on the heap; the weights are never copied by the collector and can be 
+ * shared by any number of reader threads.
+ * 
+ * @author Enrique Urra C.
+ */
+final class OffHeapProblemInstance extends ArrayProblemInstance
+{
+    private static final int SEGMENT_BITS = 28;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+    
+    private final ByteBuffer[] segments;
+    private final long itemStride;
+    private final long resourceStride;
+
+    private OffHeapProblemInstance(int number, int[] profits, int[] capacities, ByteBuffer[] segments, long itemStride, long resourceStride)
+    {
+        super(number, profits, capacities);
+        
+        this.segments = segments;
+        this.itemStride = itemStride;
+        this.resourceStride = resourceStride;
+    }
+    
+    private static int segmentsFor(long ints)
+    {
+        return (int)((ints + SEGMENT_MASK) >>> SEGMENT_BITS);
+    }
+    
+    private static int segmentInts(long ints, int segment)
+    {
+        return (int)Math.min(1L << SEGMENT_BITS, ints - ((long)segment << SEGMENT_BITS));
+    }
+    
+    /**
+     * Copies the weights of an instance to direct buffers, in item-major 
+     * order.
+     */
+    public static OffHeapProblemInstance copyOf(MKPProblemInstance instance)
+    {
+        int itemsCount = instance.getItemsCount();
+        int resourcesCount = instance.getResourcesCount();
+        int[] profits = new int[itemsCount];
+        int[] capacities = new int[resourcesCount];
+        long ints = (long)itemsCount * resourcesCount;
+        ByteBuffer[] segments = new ByteBuffer[segmentsFor(ints)];
+        IndexedWeights weights = IndexedWeights.of(instance);
+        
+        for(int i = 0; i < segments.length; i++)
+            segments[i] = ByteBuffer.allocateDirect(segmentInts(ints, i) << 2).order(ByteOrder.nativeOrder());
+        
+        for(int i = 0; i < itemsCount; i++)
+            profits[i] = instance.getProfit(i);
+        
+        for(int i = 0; i < resourcesCount; i++)
+            capacities[i] = instance.getResource(i).getCapacity();
+        
+        long offset = 0;
+        
+        for(int i = 0; i < itemsCount; i++)
+        {
+            for(int r = 0; r < resourcesCount; r++, offset++)
+                segments[(int)(offset >>> SEGMENT_BITS)].putInt((int)(offset & SEGMENT_MASK) << 2, weights.getWeight(i, r));
+        }
+        
+        return new OffHeapProblemInstance(instance.getNumber(), profits, capacities, segments, resourcesCount, 1);
+    }
+    
+    /**
+     * Maps the weights of an instance of a binary instances file, which are 
+     * stored in resource-major order, without reading them.
+     */
+    public static OffHeapProblemInstance map(Path file, int instanceNumber) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            int[] header = readInts(channel, 0, 2);
+            
+            if(header[0] != MKPInstanceGenerator.BINARY_MAGIC)
+                throw new IOException("Not a binary instances file: " + file);
+            
+            if(instanceNumber < 0 || instanceNumber >= header[1])
+                throw new IndexOutOfBoundsException("Wrong instance number: " + instanceNumber);
+            
+            long position = 8;
+            
+            for(int k = 0; k < instanceNumber; k++)
+            {
+                int[] sizes = readInts(channel, position, 2);
+                position += 8 + 4L * ((long)sizes[0] + (long)sizes[0] * sizes[1] + sizes[1]);
+            }
+            
+            int[] sizes = readInts(channel, position, 2);
+            int itemsCount = sizes[0];
+            int resourcesCount = sizes[1];
+            long ints = (long)itemsCount * resourcesCount;
+            long weightsPosition = position + 8 + 4L * itemsCount;
+            int[] profits = readInts(channel, position + 8, itemsCount);
+            int[] capacities = readInts(channel, weightsPosition + 4 * ints, resourcesCount);
+            ByteBuffer[] segments = new ByteBuffer[segmentsFor(ints)];
+            
+            for(int i = 0; i < segments.length; i++)
+            {
+                long segmentPosition = weightsPosition + ((long)i << (SEGMENT_BITS + 2));
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentPosition, (long)segmentInts(ints, i) << 2);
+            }
+            
+            return new OffHeapProblemInstance(instanceNumber, profits, capacities, segments, 1, itemsCount);
+        }
+    }
+    
+    private static int[] readInts(FileChannel channel, long position, int count) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * count);
+        
+        while(buffer.hasRemaining())
+        {
+            if(channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of file");
+        }
+        
+        buffer.flip();
+        int[] values = new int[count];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(values);
+        
+        return values;
+    }
+    
+    /**
+     * Checks if a file starts with the magic number of binary instance files.
+     */
+    public static boolean isBinaryFile(Path file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            return channel.size() >= 8 && readInts(channel, 0, 1)[0] == MKPInstanceGenerator.BINARY_MAGIC;
+        }
+    }
+
+    @Override
+    public int getWeight(int itemId, int resourceId)
+    {
+        long offset = itemId * itemStride + resourceId * resourceStride;
+        return segments[(int)(offset >>> SEGMENT_BITS)].getInt((int)(offset & SEGMENT_MASK) << 2);
+    }
+}
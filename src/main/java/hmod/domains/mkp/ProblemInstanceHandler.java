@@ -2,6 +2,8 @@
 package hmod.domains.mkp;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  *
@@ -11,6 +13,20 @@ public final class ProblemInstanceHandler implements MKPProblemInstance
 {
     private final MKPProblemInstance instance;
     private double lpOptimum = -1.0;
+    private final int integralBound;
+    private volatile Long fingerprint;
+    private IndexedWeights indexedWeights;
+    private volatile long[] zobristKeys;
+    
+    ProblemInstanceHandler(MKPProblemInstance instance, double lpOptimum)
+    {
+        if(instance == null)
+            throw new NullPointerException("Null instance");
+        
+        this.instance = instance;
+        this.lpOptimum = lpOptimum;
+        this.integralBound = MKPProblemInstance.super.getIntegralBound();
+    }
     
     ProblemInstanceHandler(String file, int instanceNumber, String lpOptimumsFile) throws IndexOutOfBoundsException
     {
@@ -18,8 +34,15 @@ public final class ProblemInstanceHandler implements MKPProblemInstance
         
         try
         {
-            MKPProblemInstance[] instances = parser.parse(file);
-            instance = instances[instanceNumber];
+            Path path = Paths.get(file);
+            MKPInstanceIndex index;
+            
+            if(OffHeapProblemInstance.isBinaryFile(path))
+                instance = OffHeapProblemInstance.map(path, instanceNumber);
+            else if((index = MKPInstanceIndex.loadSidecar(path)) != null)
+                instance = index.parse(instanceNumber);
+            else
+                instance = parser.parse(file, instanceNumber);
             
             if(lpOptimumsFile != null)
             {
@@ -35,6 +58,8 @@ public final class ProblemInstanceHandler implements MKPProblemInstance
         {
             throw new RuntimeException("Cannot initialize the problem instance in file '" + file + "'", ex);
         }
+        
+        integralBound = MKPProblemInstance.super.getIntegralBound();
     }
 
     @Override
@@ -61,6 +86,12 @@ public final class ProblemInstanceHandler implements MKPProblemInstance
         return instance.getItem(itemId);
     }
 
+    @Override
+    public int getProfit(int itemId)
+    {
+        return instance.getProfit(itemId);
+    }
+
     @Override
     public Resource getResource(int resourceId)
     {
@@ -97,12 +128,72 @@ public final class ProblemInstanceHandler implements MKPProblemInstance
         return instance.getWeight(item, resource);
     }
 
+    MKPProblemInstance getInstance()
+    {
+        return instance;
+    }
+    
+    IndexedWeights getIndexedWeights()
+    {
+        if(indexedWeights == null)
+            indexedWeights = IndexedWeights.of(instance);
+        
+        return indexedWeights;
+    }
+    
+    long[] getZobristKeys()
+    {
+        if(instance instanceof DynamicProblemInstance)
+            return ((DynamicProblemInstance)instance).getZobristKeys();
+        
+        long[] curr = zobristKeys;
+        
+        if(curr == null)
+        {
+            int itemsCount = instance.getItemsCount();
+            curr = new long[itemsCount];
+            
+            for(int i = 0; i < itemsCount; i++)
+                curr[i] = instance.getZobristKey(i);
+            
+            zobristKeys = curr;
+        }
+        
+        return curr;
+    }
+    
+    @Override
+    public long getZobristKey(int itemId)
+    {
+        return getZobristKeys()[itemId];
+    }
+    
+    @Override
+    public long getFingerprint()
+    {
+        if(instance instanceof DynamicProblemInstance)
+            return instance.getFingerprint();
+        
+        Long curr = fingerprint;
+        
+        if(curr == null)
+            fingerprint = curr = instance.getFingerprint();
+        
+        return curr;
+    }
+
     @Override
     public double getLPOptimum()
     {
         return lpOptimum;
     }
 
+    @Override
+    public int getIntegralBound()
+    {
+        return integralBound;
+    }
+
     @Override
     public boolean isLPOptimumAvailable()
     {
@@ -1,4 +1,3 @@
-
 package hmod.domains.mkp;
 
 /**
@@ -7,7 +6,9 @@ package hmod.domains.mkp;
  */
 public final class SelectedItemHandler
 {
-    private Item item;
+    private static final int NONE = -1;
+    
+    private int itemId = NONE;
     private final MKPProblemInstance instance;
 
     public SelectedItemHandler(MKPProblemInstance instance)
@@ -26,24 +27,46 @@ public final class SelectedItemHandler
         if(!instance.itemExists(item))
             throw new IllegalArgumentException("The item do not belongs to the instance");
         
-        this.item = item;
+        this.itemId = item.getId();
+    }
+    
+    /**
+     * Selects an item without validating it, for items taken from the 
+     * instance or a builder. The checks are only performed when assertions 
+     * are enabled.
+     */
+    void selectTrusted(Item item)
+    {
+        assert item != null && instance.itemExists(item) : "Wrong trusted item " + item;
+        this.itemId = item.getId();
+    }
+    
+    void selectTrusted(int id)
+    {
+        assert id >= 0 && id < instance.getItemsCount() : "Wrong trusted item id " + id;
+        this.itemId = id;
     }
 
     public Item getSelected() throws IllegalStateException
     {
-        if(item == null)
+        return instance.getItem(getSelectedId());
+    }
+    
+    int getSelectedId() throws IllegalStateException
+    {
+        if(itemId == NONE)
             throw new IllegalStateException("No item has been selected");
         
-        return item;
+        return itemId;
     }
 
     public void clear()
     {
-        item = null;
+        itemId = NONE;
     }
 
     public boolean isItemSelected()
     {
-        return item != null;
+        return itemId != NONE;
     }
 }
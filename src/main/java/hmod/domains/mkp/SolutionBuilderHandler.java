@@ -2,19 +2,45 @@
 package hmod.domains.mkp;
 
 import java.util.Arrays;
-import java.util.HashSet;
+import optefx.util.random.RandomTool;
 
 /**
- *
+ * Incremental solution builder. The state is kept over item ids (bitset, 
+ * profits and weights arrays); {@link Item} objects are only taken and 
+ * returned by the public methods.
+ * 
  * @author Enrique Urra C.
  */
 public final class SolutionBuilderHandler implements MKPSolutionBuilder
 {
     private final MKPProblemInstance instance;
-    private final HashSet<Item> included;
-    private final HashSet<Item> available;
-    private int[] currResourceUsage;
+    private final DynamicProblemInstance dynamic;
+    private long version;
+    private IndexedWeights weights;
+    private int[] rowStarts;
+    private int[] rowResources;
+    private int[] rowWeights;
+    private long[] tombstones;
+    private int itemsCount;
+    private int liveCount;
+    private int[] profits;
+    private long[] included;
+    private int[] capacities;
+    private long[] zobristKeys;
+    private long[] currResourceUsage;
     private int maxProfit;
+    private int includedCount;
+    private int totalProfit;
+    private long hash;
+    private int violatedCount;
+    private long capacityExcess;
+    private boolean proportionalPenalty;
+    private MKPMetrics metrics;
+    private int[] journal = new int[16];
+    private int journalSize;
+    private boolean journaling;
+    private int[] profitOrder;
+    private int[] fillBuffer;
 
     SolutionBuilderHandler(MKPProblemInstance instance)
     {
@@ -22,189 +48,776 @@ public final class SolutionBuilderHandler implements MKPSolutionBuilder
             throw new NullPointerException("Null instance");
         
         this.instance = instance;
-        int itemsCount = instance.getItemsCount();
-        included = new HashSet<>(itemsCount);
-        available = new HashSet<>(itemsCount);
-        maxProfit = calculateMaxProfit();
-        
+        this.dynamic = DynamicProblemInstance.of(instance);
+        bind();
         clear();
     }
     
+    /**
+     * Takes the data of the instance. For a dynamic instance it is taken 
+     * again by {@link #clear()} after each change, so a long-lived builder 
+     * solves the current data, while its forks keep the data they were 
+     * created with.
+     */
+    private void bind()
+    {
+        version = dynamic == null ? 0 : dynamic.getVersion();
+        weights = IndexedWeights.of(instance);
+        zobristKeys = HashUtils.zobristKeys(instance);
+        
+        SparseProblemInstance sparse = SparseProblemInstance.of(instance);
+        rowStarts = sparse == null ? null : sparse.getRowStarts();
+        rowResources = sparse == null ? null : sparse.getRowResources();
+        rowWeights = sparse == null ? null : sparse.getRowWeights();
+        itemsCount = instance.getItemsCount();
+        included = new long[(itemsCount + 63) >>> 6];
+        profits = new int[itemsCount];
+        fillBuffer = null;
+        
+        for(int i = 0; i < itemsCount; i++)
+            profits[i] = instance.getProfit(i);
+        
+        maxProfit = dynamic == null ? calculateMaxProfit() : dynamic.getMaxProfit();
+        profitOrder = dynamic == null ? null : dynamic.getProfitOrder();
+        tombstones = dynamic == null ? null : dynamic.getTombstones();
+        liveCount = dynamic == null ? itemsCount : dynamic.getLiveItemsCount();
+        
+        int resourcesCount = instance.getResourcesCount();
+        capacities = new int[resourcesCount];
+        currResourceUsage = new long[resourcesCount];
+        
+        for(int i = 0; i < resourcesCount; i++)
+            capacities[i] = instance.getResource(i).getCapacity();
+    }
+    
+    private SolutionBuilderHandler(SolutionBuilderHandler source)
+    {
+        this.instance = source.instance;
+        this.dynamic = source.dynamic;
+        this.version = source.version;
+        this.weights = source.weights;
+        this.rowStarts = source.rowStarts;
+        this.rowResources = source.rowResources;
+        this.rowWeights = source.rowWeights;
+        this.tombstones = source.tombstones;
+        this.itemsCount = source.itemsCount;
+        this.liveCount = source.liveCount;
+        this.profits = source.profits;
+        this.included = source.included.clone();
+        this.capacities = source.capacities;
+        this.zobristKeys = source.zobristKeys;
+        this.currResourceUsage = source.currResourceUsage.clone();
+        this.maxProfit = source.maxProfit;
+        this.includedCount = source.includedCount;
+        this.totalProfit = source.totalProfit;
+        this.hash = source.hash;
+        this.violatedCount = source.violatedCount;
+        this.capacityExcess = source.capacityExcess;
+        this.proportionalPenalty = source.proportionalPenalty;
+        this.metrics = source.metrics;
+        this.profitOrder = source.profitOrder;
+    }
+    
     private int calculateMaxProfit()
     {
-        int itemsCount = instance.getItemsCount();
-        Item maxProfitItem = null;
+        int maxProfit = 0;
         
         for(int i = 0; i < itemsCount; i++)
+            maxProfit = Math.max(maxProfit, profits[i]);
+        
+        return maxProfit;
+    }
+    
+    private void setUsage(int resource, long newUsage)
+    {
+        int capacity = capacities[resource];
+        long oldUsage = currResourceUsage[resource];
+        
+        if(oldUsage > capacity)
+        {
+            violatedCount--;
+            capacityExcess -= oldUsage - capacity;
+        }
+        
+        if(newUsage > capacity)
+        {
+            violatedCount++;
+            capacityExcess += newUsage - capacity;
+        }
+        
+        currResourceUsage[resource] = newUsage;
+    }
+    
+    private void addWeight(int id)
+    {
+        if(rowStarts != null)
         {
-            Item currItem = instance.getItem(i);
+            for(int k = rowStarts[id]; k < rowStarts[id + 1]; k++)
+                setUsage(rowResources[k], currResourceUsage[rowResources[k]] + rowWeights[k]);
             
-            if(maxProfitItem == null || maxProfitItem.getProfit() < currItem.getProfit())
-                maxProfitItem = currItem;
+            return;
         }
         
-        return maxProfitItem.getProfit();
+        for(int i = 0; i < currResourceUsage.length; i++)
+            setUsage(i, currResourceUsage[i] + weights.getWeight(id, i));
     }
     
-    private void addWeight(Item item)
+    private void removeWeight(int id)
     {
+        if(rowStarts != null)
+        {
+            for(int k = rowStarts[id]; k < rowStarts[id + 1]; k++)
+                setUsage(rowResources[k], currResourceUsage[rowResources[k]] - rowWeights[k]);
+            
+            return;
+        }
+        
         for(int i = 0; i < currResourceUsage.length; i++)
-            currResourceUsage[i] += instance.getWeight(item, instance.getResource(i));
+            setUsage(i, currResourceUsage[i] - weights.getWeight(id, i));
     }
     
-    private void removeWeightTo(int[] resourceUsage, Item item)
+    private int getConstraintViolation()
+    {
+        if(proportionalPenalty)
+            return (int)Math.min(Integer.MAX_VALUE, capacityExcess);
+        
+        return violatedCount * includedCount * (maxProfit + 1);
+    }
+
+    private boolean isIncluded(int id)
     {
-        for(int i = 0; i < resourceUsage.length; i++)
-            resourceUsage[i] -= instance.getWeight(item, instance.getResource(i));
+        return (included[id >>> 6] & (1L << id)) != 0;
     }
     
-    private int getConstraintViolation(int[] resourceUsage)
+    private boolean isRetired(int id)
     {
-        int overFilledCount = 0;
+        return tombstones != null && (tombstones[id >>> 6] & (1L << id)) != 0;
+    }
+    
+    /**
+     * @return the bits of the available items in a word of the bitset: not 
+     * included and not retired
+     */
+    private long availableWord(int i)
+    {
+        return tombstones == null ? ~included[i] : ~(included[i] | tombstones[i]);
+    }
+    
+    private void doInclude(int id)
+    {
+        included[id >>> 6] |= 1L << id;
+        hash ^= zobristKeys[id];
+        includedCount++;
+        totalProfit += profits[id];
+        addWeight(id);
+    }
+    
+    private void doExclude(int id)
+    {
+        included[id >>> 6] &= ~(1L << id);
+        hash ^= zobristKeys[id];
+        includedCount--;
+        totalProfit -= profits[id];
+        removeWeight(id);
+    }
+    
+    private Item[] collectItems(boolean selected, int count)
+    {
+        int[] ids = collectIds(selected, count);
+        Item[] items = new Item[count];
+        
+        for(int i = 0; i < count; i++)
+            items[i] = instance.getItem(ids[i]);
+        
+        return items;
+    }
+    
+    private int[] collectIds(boolean selected, int count)
+    {
+        int[] ids = new int[count];
+        collectIds(selected, ids);
+        
+        return ids;
+    }
+    
+    private int collectIds(boolean selected, int[] ids)
+    {
+        int pos = 0;
         
-        for(int i = 0; i < resourceUsage.length; i++)
+        for(int i = 0; i < included.length; i++)
         {
-            Resource res = instance.getResource(i);
+            long word = selected ? included[i] : availableWord(i);
             
-            if(res.getCapacity() < resourceUsage[i])
-                overFilledCount++;
+            while(word != 0)
+            {
+                int id = (i << 6) + Long.numberOfTrailingZeros(word);
+                
+                if(id >= itemsCount)
+                    break;
+                
+                ids[pos++] = id;
+                word &= word - 1;
+            }
         }
         
-        return overFilledCount * included.size() * (maxProfit + 1);
+        return pos;
+    }
+    
+    private void record(int entry)
+    {
+        if(journalSize == journal.length)
+            journal = Arrays.copyOf(journal, journalSize * 2);
         
-        /*int constraintViolation = 0;
+        journal[journalSize++] = entry;
+    }
+    
+    /**
+     * Starts (or continues) recording the moves applied to the builder, so 
+     * they can be undone with {@link #rollback(int)}. The journal is kept 
+     * until {@link #releaseMarks()}, {@link #clear()} or 
+     * {@link #importSolution(MKPSolution)} are called.
+     * @return the mark of the current state
+     */
+    public int mark()
+    {
+        journaling = true;
+        return journalSize;
+    }
+    
+    /**
+     * Restores the state of a previous mark by undoing the moves recorded 
+     * since then, in time proportional to their number. Marks taken after the
+     * provided one become invalid.
+     */
+    public void rollback(int mark) throws IllegalArgumentException
+    {
+        if(!journaling || mark < 0 || mark > journalSize)
+            throw new IllegalArgumentException("Invalid mark: " + mark);
         
-        for(int i = 0; i < resourceUsage.length; i++)
+        while(journalSize > mark)
         {
-            Resource res = instance.getResource(i);
+            int entry = journal[--journalSize];
             
-            if(res.getCapacity() < resourceUsage[i])
-                constraintViolation += resourceUsage[i] - res.getCapacity();
+            if(entry >= 0)
+                doExclude(entry);
+            else
+                doInclude(~entry);
         }
-        
-        return constraintViolation;*/
+    }
+    
+    /**
+     * Stops recording moves and discards the journal.
+     */
+    public void releaseMarks()
+    {
+        journaling = false;
+        journalSize = 0;
+    }
+    
+    public int getJournalSize()
+    {
+        return journalSize;
     }
 
     @Override
     public void includeItem(Item item) throws IllegalArgumentException
     {
-        if(included.contains(item))
+        instance.checkItem(item);
+        includeTrusted(item);
+    }
+    
+    /**
+     * Includes an item without validating that it belongs to the instance, 
+     * for internal operators whose items come from this builder or its 
+     * instance. That check is only performed when assertions are enabled.
+     */
+    void includeTrusted(Item item) throws IllegalArgumentException
+    {
+        assert instance.itemExists(item) : "Wrong trusted item " + item;
+        includeTrusted(item.getId());
+    }
+    
+    void includeTrusted(int id) throws IllegalArgumentException
+    {
+        if(isIncluded(id))
             throw new IllegalArgumentException("The provided item is already added");
         
-        instance.checkItem(item);
-        included.add(item);
-        available.remove(item);
-        addWeight(item);
+        long start = metrics == null ? MKPMetrics.NOT_SAMPLED : metrics.begin(MKPMetrics.Operation.INCLUDE);
+        doInclude(id);
+        
+        if(journaling)
+            record(id);
+        
+        if(metrics != null)
+            metrics.end(MKPMetrics.Operation.INCLUDE, start);
     }
     
     @Override
     public void excludeItem(Item item) throws IllegalArgumentException
     {
-        if(!included.contains(item))
+        instance.checkItem(item);
+        excludeTrusted(item);
+    }
+    
+    void excludeTrusted(Item item) throws IllegalArgumentException
+    {
+        assert instance.itemExists(item) : "Wrong trusted item " + item;
+        excludeTrusted(item.getId());
+    }
+    
+    void excludeTrusted(int id) throws IllegalArgumentException
+    {
+        if(!isIncluded(id))
             throw new IllegalArgumentException("The provided item has not been added");
         
-        included.remove(item);
-        available.add(item);
-        removeWeightTo(currResourceUsage, item);
+        long start = metrics == null ? MKPMetrics.NOT_SAMPLED : metrics.begin(MKPMetrics.Operation.EXCLUDE);
+        doExclude(id);
+        
+        if(journaling)
+            record(~id);
+        
+        if(metrics != null)
+            metrics.end(MKPMetrics.Operation.EXCLUDE, start);
     }
     
     @Override
     public boolean isIncludeFeasible(Item item)
     {
-        for(int i = 0; i < currResourceUsage.length; i++)
+        instance.checkItem(item);
+        return isIncludeFeasibleTrusted(item);
+    }
+    
+    boolean isIncludeFeasibleTrusted(Item item)
+    {
+        assert instance.itemExists(item) : "Wrong trusted item " + item;
+        return isIncludeFeasibleTrusted(item.getId());
+    }
+    
+    boolean isIncludeFeasibleTrusted(int id)
+    {
+        if(metrics == null)
+            return fits(id);
+        
+        long start = metrics.begin(MKPMetrics.Operation.FEASIBILITY_CHECK);
+        boolean feasible = fits(id);
+        metrics.end(MKPMetrics.Operation.FEASIBILITY_CHECK, start);
+        
+        return feasible;
+    }
+    
+    private boolean fits(int id)
+    {
+        if(isRetired(id))
+            return false;
+        
+        if(rowStarts != null)
         {
-            Resource res = instance.getResource(i);
+            // A resource already over its capacity rejects any item, as in 
+            // the dense check, even if the item does not use it
+            if(violatedCount > 0)
+                return false;
+            
+            for(int k = rowStarts[id]; k < rowStarts[id + 1]; k++)
+            {
+                int resource = rowResources[k];
+                
+                if(currResourceUsage[resource] + rowWeights[k] > capacities[resource])
+                    return false;
+            }
             
-            if(currResourceUsage[i] + instance.getWeight(item, res) > res.getCapacity())
+            return true;
+        }
+        
+        for(int i = 0; i < currResourceUsage.length; i++)
+        {
+            if(currResourceUsage[i] + weights.getWeight(id, i) > capacities[i])
                 return false;
         }
         
         return true;
     }
-
+    
+    private void includeId(int id)
+    {
+        doInclude(id);
+        
+        if(journaling)
+            record(id);
+    }
+    
+    /**
+     * Random fill that only samples items that fit: repeatedly includes a 
+     * uniformly random item among the fitting available ones. As capacities 
+     * only tighten during the fill, a candidate found not to fit is dropped 
+     * for good by swap-removal, so each item is checked O(1) times and the
+     * fill costs O(n m). The result follows the same distribution as 
+     * {@link #fillRandomlyInOrder()}, but with a different random stream.
+     */
+    void fillRandomly() throws IllegalStateException
+    {
+        if(includedCount == liveCount)
+            throw new IllegalStateException("No available items exist for storing");
+        
+        if(fillBuffer == null)
+            fillBuffer = new int[itemsCount];
+        
+        int[] candidates = fillBuffer;
+        int count = 0;
+        int previousCount = includedCount;
+        long checks = 0;
+        
+        for(int i = 0; i < included.length; i++)
+        {
+            long word = availableWord(i);
+            
+            while(word != 0)
+            {
+                int id = (i << 6) + Long.numberOfTrailingZeros(word);
+                
+                if(id >= itemsCount)
+                    break;
+                
+                checks++;
+                
+                if(fits(id))
+                    candidates[count++] = id;
+                
+                word &= word - 1;
+            }
+        }
+        
+        checks += count;
+        
+        while(count > 0)
+        {
+            int pos = RandomTool.getInt(count);
+            int id = candidates[pos];
+            
+            // Stale candidates are rejected once and never return
+            if(fits(id))
+                includeId(id);
+            
+            candidates[pos] = candidates[--count];
+        }
+        
+        countFill(checks, includedCount - previousCount);
+    }
+    
+    /**
+     * Adds the checks and includes of a fused fill to the metrics, as the 
+     * fills do not go through the counted single-item operations.
+     */
+    private void countFill(long checks, long includes)
+    {
+        if(metrics == null)
+            return;
+        
+        metrics.add(MKPMetrics.Operation.FEASIBILITY_CHECK, checks);
+        metrics.add(MKPMetrics.Operation.INCLUDE, includes);
+    }
+    
+    /**
+     * Fused random fill: repeatedly picks a uniformly random item among the 
+     * remaining available ones (in ascending id order), includes it if it 
+     * fits and discards it. Consumes the random stream exactly as the 
+     * flowchart version built with {@link MKPOperators#selectRandomItemInList},
+     * at O(n) per discarded item.
+     */
+    void fillRandomlyInOrder() throws IllegalStateException
+    {
+        if(fillBuffer == null)
+            fillBuffer = new int[itemsCount];
+        
+        int[] ids = fillBuffer;
+        int count = 0;
+        
+        for(int i = 0; i < included.length; i++)
+        {
+            long word = availableWord(i);
+            
+            while(word != 0)
+            {
+                int id = (i << 6) + Long.numberOfTrailingZeros(word);
+                
+                if(id >= itemsCount)
+                    break;
+                
+                ids[count++] = id;
+                word &= word - 1;
+            }
+        }
+        
+        if(count == 0)
+            throw new IllegalStateException("No available items exist for storing");
+        
+        int previousCount = includedCount;
+        long checks = count;
+        
+        while(count > 0)
+        {
+            int pos = RandomTool.getInt(count);
+            int id = ids[pos];
+            
+            if(fits(id))
+                includeId(id);
+            
+            System.arraycopy(ids, pos + 1, ids, pos, count - pos - 1);
+            count--;
+        }
+        
+        countFill(checks, includedCount - previousCount);
+    }
+    
+    /**
+     * Fused greedy fill: tries the available items by decreasing profit (ties
+     * by ascending id), including each one that fits. Gives the same result 
+     * as the flowchart version built with 
+     * {@link MKPOperators#selectMostProfitableItemInList}.
+     */
+    void fillGreedily() throws IllegalStateException
+    {
+        if(includedCount == liveCount)
+            throw new IllegalStateException("No available items exist for storing");
+        
+        if(profitOrder == null)
+            profitOrder = calculateProfitOrder();
+        
+        int previousCount = includedCount;
+        long checks = 0;
+        
+        for(int i = 0; i < profitOrder.length; i++)
+        {
+            int id = profitOrder[i];
+            
+            if(isIncluded(id))
+                continue;
+            
+            checks++;
+            
+            if(fits(id))
+                includeId(id);
+        }
+        
+        countFill(checks, includedCount - previousCount);
+    }
+    
+    private int[] calculateProfitOrder()
+    {
+        long[] keys = new long[itemsCount];
+        
+        for(int i = 0; i < itemsCount; i++)
+            keys[i] = ((long)(Integer.MAX_VALUE - profits[i]) << 32) | i;
+        
+        Arrays.sort(keys);
+        int[] order = new int[itemsCount];
+        
+        for(int i = 0; i < itemsCount; i++)
+            order[i] = (int)keys[i];
+        
+        return order;
+    }
+    
     @Override
     public boolean isItemIncluded(Item item)
     {
-        return included.contains(item);
+        return instance.itemExists(item) && isIncluded(item.getId());
     }
 
     @Override
     public Item[] getIncludedItems()
     {
-        return included.toArray(new Item[0]);
+        return collectItems(true, includedCount);
     }
     
     @Override
     public Item[] getAvailableItems()
     {
-        return available.toArray(new Item[0]);
+        return collectItems(false, liveCount - includedCount);
+    }
+    
+    int[] getIncludedIds()
+    {
+        return collectIds(true, includedCount);
+    }
+    
+    /**
+     * Copies the ids of the included items, in ascending order, into a buffer
+     * of at least {@link #getIncludedCount()} elements.
+     * @return the number of ids copied
+     */
+    int copyIncludedIds(int[] buffer)
+    {
+        return collectIds(true, buffer);
     }
     
+    int[] getAvailableIds()
+    {
+        return collectIds(false, liveCount - includedCount);
+    }
 
     @Override
     public int getIncludedCount()
     {
-        return included.size();
+        return includedCount;
     }
 
     @Override
     public int getAvailableCount()
     {
-        return available.size();
+        return liveCount - includedCount;
+    }
+    
+    public int getTotalProfit()
+    {
+        return totalProfit;
+    }
+
+    /**
+     * @return the Zobrist hash of the included items, maintained on each 
+     * include and exclude
+     */
+    public long getHash()
+    {
+        return hash;
     }
 
     @Override
     public boolean isFeasible()
     {
-        return getConstraintViolation(currResourceUsage) > 0;
+        return violatedCount == 0;
+    }
+    
+    public int getViolatedResourcesCount()
+    {
+        return violatedCount;
+    }
+    
+    public long getCapacityExcess()
+    {
+        return capacityExcess;
+    }
+
+    public boolean isProportionalPenalty()
+    {
+        return proportionalPenalty;
+    }
+
+    public void setProportionalPenalty(boolean proportionalPenalty)
+    {
+        this.proportionalPenalty = proportionalPenalty;
+    }
+
+    public MKPMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public void setMetrics(MKPMetrics metrics)
+    {
+        this.metrics = metrics;
     }
 
     @Override
     public MKPSolution build()
     {
-        Item[] finalItems = new Item[included.size()];
-        int totalProfit = 0;
-        int pos = 0;
+        long start = metrics == null ? MKPMetrics.NOT_SAMPLED : metrics.begin(MKPMetrics.Operation.BUILD);
+        int[] finalIds = collectIds(true, includedCount);
+        int constraintViolation = getConstraintViolation();
+        MKPSolution solution = new DefaultMKPSolution(instance, totalProfit, constraintViolation, finalIds, DefaultMKPSolution.saturatedUsage(currResourceUsage), hash);
         
-        for(Item item : included)
-        {
-            finalItems[pos++] = item;
-            totalProfit += item.getProfit();
-        }
+        if(metrics != null)
+            metrics.end(MKPMetrics.Operation.BUILD, start);
         
-        int constraintViolation = getConstraintViolation(currResourceUsage);        
-        return new DefaultMKPSolution(instance, totalProfit, constraintViolation, finalItems, Arrays.copyOf(currResourceUsage, currResourceUsage.length));
+        return solution;
     }
     
     public void importSolution(MKPSolution input)
     {
         clear();
-        Item[] inputItems = input.getItems();
         
-        for(int i = 0; i < inputItems.length; i++)
-            includeItem(inputItems[i]);
+        if(input.getInstance() != instance)
+        {
+            Item[] inputItems = input.getItems();
+            
+            for(int i = 0; i < inputItems.length; i++)
+                includeItem(inputItems[i]);
+            
+            return;
+        }
+        
+        int[] inputIds = input.getItemIds();
+        
+        for(int i = 0; i < inputIds.length; i++)
+        {
+            int id = inputIds[i];
+            
+            if(id >= itemsCount || isRetired(id))
+                throw new IllegalArgumentException("The item do not belongs to the problem instance");
+            
+            includeTrusted(id);
+        }
+    }
+
+    /**
+     * Creates an independent builder with the same state. Only the item 
+     * bitset and the resource usage are copied, in O(n/64 + m); the journal
+     * is not inherited.
+     */
+    public SolutionBuilderHandler fork()
+    {
+        return new SolutionBuilderHandler(this);
+    }
+    
+    /**
+     * Sets the state of this builder to the state of another one built over 
+     * the same instance (e.g. a fork), in O(n/64 + m). Any journal is
+     * discarded.
+     */
+    public void restore(SolutionBuilderHandler state) throws IllegalArgumentException
+    {
+        if(state.instance != instance)
+            throw new IllegalArgumentException("The provided state belongs to other instance");
+        
+        if(state.version != version)
+            throw new IllegalArgumentException("The provided state belongs to other version of the instance");
+        
+        releaseMarks();
+        System.arraycopy(state.included, 0, included, 0, included.length);
+        System.arraycopy(state.currResourceUsage, 0, currResourceUsage, 0, currResourceUsage.length);
+        includedCount = state.includedCount;
+        totalProfit = state.totalProfit;
+        hash = state.hash;
+        violatedCount = state.violatedCount;
+        capacityExcess = state.capacityExcess;
     }
 
+    /**
+     * Empties the builder. If its dynamic instance has changed since the data
+     * was taken, the current data is taken first.
+     */
     @Override
     public final void clear()
     {
-        available.clear();
-        included.clear();
-        currResourceUsage = new int[instance.getResourcesCount()];
-        
-        int itemsCount = instance.getItemsCount();
+        if(dynamic != null && dynamic.getVersion() != version)
+            bind();
         
-        for(int i = 0; i < itemsCount; i++)
-            available.add(instance.getItem(i));
+        releaseMarks();
+        Arrays.fill(included, 0L);
+        Arrays.fill(currResourceUsage, 0);
+        includedCount = 0;
+        totalProfit = 0;
+        hash = 0;
+        violatedCount = 0;
+        capacityExcess = 0;
     }
     
     public boolean checkIfCanAdd()
     {
-        return included.size() < instance.getItemsCount();
+        return includedCount < liveCount;
     }
     
     public boolean checkIfCanRemove()
     {
-        return included.size() > 1;
+        return includedCount > 1;
     }
 }
@@ -0,0 +1,124 @@
+package hmod.domains.mkp;
+
+import java.util.Arrays;
+
+/**
+ * Instance with its weights stored in compressed sparse rows: the nonzero 
+ * weights of item i, with their resource ids in ascending order, are at the
+ * positions {@code rowStarts[i]} to {@code rowStarts[i + 1] - 1} of the 
+ * {@code rowResources} and {@code rowWeights} arrays. Memory is proportional
+ * to the number of nonzero weights, and the solution builder only visits the
+ * nonzero resources of an item.
+ * 
+ * @author Enrique Urra C.
+ */
+final class SparseProblemInstance extends ArrayProblemInstance
+{
+    private final int[] rowStarts;
+    private final int[] rowResources;
+    private final int[] rowWeights;
+
+    public SparseProblemInstance(int number, int[] profits, int[] capacities, int[] rowStarts, int[] rowResources, int[] rowWeights)
+    {
+        super(number, profits, capacities);
+        
+        if(rowStarts.length != profits.length + 1 || rowStarts[0] != 0)
+            throw new IllegalArgumentException("Wrong row starts");
+        
+        if(rowResources.length != rowWeights.length || rowStarts[profits.length] != rowResources.length)
+            throw new IllegalArgumentException("Wrong number of nonzero entries");
+        
+        for(int i = 0; i < profits.length; i++)
+        {
+            for(int k = rowStarts[i]; k < rowStarts[i + 1]; k++)
+            {
+                if(rowResources[k] < 0 || rowResources[k] >= capacities.length || (k > rowStarts[i] && rowResources[k] <= rowResources[k - 1]))
+                    throw new IllegalArgumentException("Wrong resource ids for item " + i);
+            }
+        }
+        
+        this.rowStarts = rowStarts;
+        this.rowResources = rowResources;
+        this.rowWeights = rowWeights;
+    }
+    
+    /**
+     * @param weights item-major dense matrix
+     */
+    public static SparseProblemInstance fromDense(int number, int[] profits, int[] capacities, int[] weights)
+    {
+        int itemsCount = profits.length;
+        int resourcesCount = capacities.length;
+        int nonZeros = 0;
+        
+        for(int i = 0; i < weights.length; i++)
+        {
+            if(weights[i] != 0)
+                nonZeros++;
+        }
+        
+        int[] rowStarts = new int[itemsCount + 1];
+        int[] rowResources = new int[nonZeros];
+        int[] rowWeights = new int[nonZeros];
+        int pos = 0;
+        
+        for(int i = 0; i < itemsCount; i++)
+        {
+            rowStarts[i] = pos;
+            
+            for(int r = 0; r < resourcesCount; r++)
+            {
+                int weight = weights[i * resourcesCount + r];
+                
+                if(weight != 0)
+                {
+                    rowResources[pos] = r;
+                    rowWeights[pos] = weight;
+                    pos++;
+                }
+            }
+        }
+        
+        rowStarts[itemsCount] = pos;
+        return new SparseProblemInstance(number, profits, capacities, rowStarts, rowResources, rowWeights);
+    }
+    
+    /**
+     * @return the sparse instance backing the provided one, or null if it is
+     * not sparse
+     */
+    static SparseProblemInstance of(MKPProblemInstance instance)
+    {
+        if(instance instanceof ProblemInstanceHandler)
+            instance = ((ProblemInstanceHandler)instance).getInstance();
+        
+        return instance instanceof SparseProblemInstance ? (SparseProblemInstance)instance : null;
+    }
+
+    @Override
+    public int getWeight(int itemId, int resourceId)
+    {
+        int pos = Arrays.binarySearch(rowResources, rowStarts[itemId], rowStarts[itemId + 1], resourceId);
+        return pos < 0 ? 0 : rowWeights[pos];
+    }
+    
+    public int getNonZerosCount()
+    {
+        return rowResources.length;
+    }
+
+    int[] getRowStarts()
+    {
+        return rowStarts;
+    }
+
+    int[] getRowResources()
+    {
+        return rowResources;
+    }
+
+    int[] getRowWeights()
+    {
+        return rowWeights;
+    }
+}
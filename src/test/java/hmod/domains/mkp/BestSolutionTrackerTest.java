@@ -0,0 +1,101 @@
+package hmod.domains.mkp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class BestSolutionTrackerTest
+{
+    private static final MKPProblemInstance INSTANCE = new MKPInstanceGenerator(10, 2, 0.5, 1L).generate(0);
+    
+    private static MKPSolution withProfit(int profit)
+    {
+        return new DefaultMKPSolution(INSTANCE, profit, 0, new int[0], new int[INSTANCE.getResourcesCount()], 0L);
+    }
+    
+    @Test
+    public void onlyStrictImprovementsNotify()
+    {
+        BestSolutionTracker tracker = new BestSolutionTracker();
+        List<Integer> notified = new ArrayList<>();
+        tracker.addListener((solution, timestamp) -> notified.add(solution.getTotalProfit()));
+        
+        assertFalse(tracker.isBestSolutionSet());
+        assertTrue(tracker.offer(withProfit(10)));
+        assertFalse(tracker.offer(withProfit(10)));
+        assertFalse(tracker.offer(withProfit(5)));
+        assertTrue(tracker.offer(withProfit(11)));
+        
+        assertEquals(2, notified.size());
+        assertEquals(10, (int)notified.get(0));
+        assertEquals(11, (int)notified.get(1));
+        assertEquals(11, tracker.getBestProfit());
+    }
+    
+    @Test
+    public void concurrentOffersKeepTheMaximum() throws InterruptedException
+    {
+        int threads = 8;
+        int offers = 5000;
+        BestSolutionTracker tracker = new BestSolutionTracker();
+        List<Integer> notified = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger maxOffered = new AtomicInteger(Integer.MIN_VALUE);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        tracker.addListener((solution, timestamp) -> notified.add(solution.getTotalProfit()));
+        
+        for(int t = 0; t < threads; t++)
+        {
+            long seed = t;
+            
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                
+                try
+                {
+                    start.await();
+                }
+                catch(InterruptedException ex)
+                {
+                    return;
+                }
+                
+                for(int i = 0; i < offers; i++)
+                {
+                    int profit = random.nextInt(1000000);
+                    maxOffered.accumulateAndGet(profit, Math::max);
+                    
+                    if(tracker.offer(withProfit(profit)))
+                        accepted.incrementAndGet();
+                }
+            });
+            
+            workers.add(worker);
+            worker.start();
+        }
+        
+        start.countDown();
+        
+        for(Thread worker : workers)
+            worker.join();
+        
+        assertEquals(maxOffered.get(), tracker.getBestProfit());
+        assertTrue(notified.size() <= accepted.get());
+        
+        // Notifications are strictly increasing and end on the incumbent
+        for(int i = 1; i < notified.size(); i++)
+            assertTrue(notified.get(i - 1) < notified.get(i));
+        
+        assertEquals(maxOffered.get(), (int)notified.get(notified.size() - 1));
+    }
+}
@@ -0,0 +1,90 @@
+package hmod.domains.mkp;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class ConvergenceTraceTest
+{
+    private static String[] csvRows(ConvergenceTrace trace) throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        trace.writeCsv(writer);
+        String[] lines = writer.toString().split("\n");
+        String[] rows = new String[lines.length - 1];
+        System.arraycopy(lines, 1, rows, 0, rows.length);
+        
+        return rows;
+    }
+    
+    @Test
+    public void clockStartsAtTheFirstEvent() throws IOException
+    {
+        ConvergenceTrace trace = new ConvergenceTrace(4);
+        assertFalse(trace.isStarted());
+        
+        trace.record(5000, 1, 10, true, -1.0);
+        trace.record(7500, 2, 12, true, -1.0);
+        String[] rows = csvRows(trace);
+        
+        assertTrue(trace.isStarted());
+        assertTrue(rows[0].startsWith("0,1,10,"));
+        assertTrue(rows[1].startsWith("2500,2,12,"));
+    }
+    
+    @Test
+    public void wrappedBufferKeepsTheNewestEventsInOrder() throws IOException
+    {
+        ConvergenceTrace trace = new ConvergenceTrace(4);
+        trace.start();
+        long base = System.nanoTime();
+        
+        for(int i = 1; i <= 10; i++)
+            trace.record(base + i, i, 100 + i, true, -1.0);
+        
+        String[] rows = csvRows(trace);
+        assertEquals(4, trace.getSize());
+        assertEquals(10, trace.getRecordedCount());
+        assertEquals(4, rows.length);
+        
+        long previousTime = Long.MIN_VALUE;
+        
+        for(int k = 0; k < rows.length; k++)
+        {
+            String[] fields = rows[k].split(",");
+            long time = Long.parseLong(fields[0]);
+            assertEquals(7 + k, Long.parseLong(fields[1]));
+            assertEquals(107 + k, Integer.parseInt(fields[2]));
+            assertTrue(time > previousTime && time > 0);
+            previousTime = time;
+        }
+    }
+    
+    @Test
+    public void improvementsPublishedToTheTrackerAreTraced() throws IOException
+    {
+        MKPProblemInstance instance = new MKPInstanceGenerator(10, 2, 0.5, 1L).generate(0);
+        MutableSolutionHandler sh = new MutableSolutionHandler();
+        ConvergenceTrace trace = new ConvergenceTrace(16);
+        sh.setConvergenceTrace(trace, false);
+        
+        sh.setSolutionForRetrieving(new DefaultMKPSolution(instance, 10, 0, new int[0], new int[2], 0L));
+        sh.getBestSolutionTracker().offer(new DefaultMKPSolution(instance, 12, 0, new int[0], new int[2], 0L));
+        sh.setSolutionForRetrieving(new DefaultMKPSolution(instance, 11, 0, new int[0], new int[2], 0L));
+        String[] rows = csvRows(trace);
+        
+        assertEquals(2, trace.getRecordedCount());
+        assertTrue(rows[0].contains(",1,10,"));
+        assertTrue(rows[1].contains(",1,12,"));
+        
+        sh.setConvergenceTrace(trace, true);
+        sh.setSolutionForRetrieving(new DefaultMKPSolution(instance, 11, 0, new int[0], new int[2], 0L));
+        sh.getBestSolutionTracker().offer(new DefaultMKPSolution(instance, 13, 0, new int[0], new int[2], 0L));
+        assertEquals(4, trace.getRecordedCount());
+    }
+}
@@ -0,0 +1,144 @@
+package hmod.domains.mkp;
+
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class DynamicProblemInstanceTest
+{
+    private static void applyRandomChanges(DynamicProblemInstance instance, Random random, int count)
+    {
+        for(int k = 0; k < count; k++)
+        {
+            int change = random.nextInt(3);
+            
+            if(change == 0)
+            {
+                int resource = random.nextInt(instance.getResourcesCount());
+                int capacity = instance.getResource(resource).getCapacity();
+                instance.updateCapacity(resource, (int)(capacity * (0.8 + 0.3 * random.nextDouble())));
+            }
+            else if(change == 1)
+            {
+                int[] weights = new int[instance.getResourcesCount()];
+                
+                for(int i = 0; i < weights.length; i++)
+                    weights[i] = 1 + random.nextInt(1000);
+                
+                instance.addItem(500 + random.nextInt(500), weights);
+            }
+            else
+            {
+                int id = random.nextInt(instance.getItemsCount());
+                
+                if(!instance.isRetired(id))
+                    instance.retireItem(id);
+            }
+        }
+    }
+    
+    @Test
+    public void derivedDataFollowsChanges()
+    {
+        DynamicProblemInstance instance = new DynamicProblemInstance(new MKPInstanceGenerator(100, 5, 0.5, 4L).generate(0));
+        applyRandomChanges(instance, new Random(8L), 300);
+        
+        long itemsHash = 0;
+        long resourcesHash = 0;
+        int maxProfit = 0;
+        int live = 0;
+        
+        for(int j = 0; j < instance.getItemsCount(); j++)
+        {
+            if(!instance.isRetired(j))
+            {
+                itemsHash += HashUtils.itemHash(instance, instance.getItem(j));
+                maxProfit = Math.max(maxProfit, instance.getItem(j).getProfit());
+                live++;
+            }
+        }
+        
+        for(int i = 0; i < instance.getResourcesCount(); i++)
+            resourcesHash += HashUtils.resourceHash(instance.getResource(i));
+        
+        assertEquals(live, instance.getLiveItemsCount());
+        assertEquals(HashUtils.combineFingerprint(live, instance.getResourcesCount(), itemsHash, resourcesHash), instance.getFingerprint());
+        assertEquals(maxProfit, instance.getMaxProfit());
+        
+        int[] order = instance.getProfitOrder();
+        assertEquals(live, order.length);
+        
+        for(int k = 1; k < order.length; k++)
+        {
+            Item prev = instance.getItem(order[k - 1]);
+            Item curr = instance.getItem(order[k]);
+            assertTrue(prev.getProfit() > curr.getProfit() || (prev.getProfit() == curr.getProfit() && prev.getId() < curr.getId()));
+        }
+    }
+    
+    @Test
+    public void zobristKeysArePerInstanceAndStable()
+    {
+        MKPInstanceGenerator generator = new MKPInstanceGenerator(100, 5, 0.5, 4L);
+        MKPProblemInstance first = generator.generate(0);
+        MKPProblemInstance second = generator.generate(1);
+        DynamicProblemInstance dynamic = new DynamicProblemInstance(first);
+        long[] keys = new long[first.getItemsCount()];
+        int shared = 0;
+        
+        for(int j = 0; j < keys.length; j++)
+        {
+            keys[j] = first.getZobristKey(j);
+            assertEquals(keys[j], new ProblemInstanceHandler(first, -1.0).getZobristKey(j));
+            assertEquals(keys[j], dynamic.getZobristKey(j));
+            
+            if(keys[j] == second.getZobristKey(j))
+                shared++;
+        }
+        
+        assertEquals(0, shared);
+        applyRandomChanges(dynamic, new Random(8L), 100);
+        
+        for(int j = 0; j < keys.length; j++)
+            assertEquals(keys[j], dynamic.getZobristKey(j));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeProfitsAreRejected()
+    {
+        DynamicProblemInstance instance = new DynamicProblemInstance(new MKPInstanceGenerator(10, 2, 0.5, 4L).generate(0));
+        instance.addItem(-1, new int[instance.getResourcesCount()]);
+    }
+    
+    @Test
+    public void repairGivesMaximalFeasibleSolutions()
+    {
+        DynamicProblemInstance instance = new DynamicProblemInstance(new MKPInstanceGenerator(200, 8, 0.5, 6L).generate(0));
+        Random random = new Random(10L);
+        MKPSolution best = instance.repair(new SolutionBuilderHandler(instance).build());
+        
+        for(int round = 0; round < 20; round++)
+        {
+            applyRandomChanges(instance, random, 10);
+            best = instance.repair(best);
+            assertTrue(best.isFeasible());
+            
+            SolutionBuilderHandler builder = new SolutionBuilderHandler(instance);
+            builder.importSolution(best);
+            
+            for(int j = 0; j < instance.getItemsCount(); j++)
+            {
+                Item item = instance.getItem(j);
+                
+                if(instance.isRetired(j))
+                    assertFalse(best.hasItem(j));
+                else if(!builder.isItemIncluded(item))
+                    assertFalse(builder.isIncludeFeasible(item));
+            }
+        }
+    }
+}
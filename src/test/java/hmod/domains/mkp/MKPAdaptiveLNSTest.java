@@ -0,0 +1,31 @@
+package hmod.domains.mkp;
+
+import optefx.util.random.RandomTool;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPAdaptiveLNSTest
+{
+    @Test
+    public void searchKeepsFeasibilityAndNeverWorsens()
+    {
+        RandomTool.setSeed(3L);
+        MKPProblemInstance instance = new MKPInstanceGenerator(300, 10, 0.5, 3L).generate(0);
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(instance);
+        builder.fillGreedily();
+        int greedyProfit = builder.getTotalProfit();
+        
+        BestSolutionTracker tracker = new BestSolutionTracker();
+        MKPSolution best = new MKPAdaptiveLNS(builder, instance).run(2000, 0, tracker);
+        
+        assertTrue(best.isFeasible());
+        assertTrue(best.getTotalProfit() >= greedyProfit);
+        assertEquals(best.getTotalProfit(), tracker.getBestProfit());
+        assertTrue(best.sameAs(builder.build()));
+        assertEquals(0, builder.getJournalSize());
+    }
+}
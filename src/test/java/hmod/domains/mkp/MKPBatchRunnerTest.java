@@ -0,0 +1,77 @@
+package hmod.domains.mkp;
+
+import static hmod.core.FlowchartFactory.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPBatchRunnerTest
+{
+    private static File tempFile() throws IOException
+    {
+        File file = File.createTempFile("mkp-batch-", ".txt");
+        file.deleteOnExit();
+        new File(file.getPath() + ".idx").deleteOnExit();
+        
+        return file;
+    }
+    
+    private static File writeInstances(MKPInstanceGenerator generator, int count) throws IOException
+    {
+        File file = tempFile();
+        
+        try(OutputStream output = new FileOutputStream(file))
+        {
+            generator.writeText(output, count);
+        }
+        
+        return file;
+    }
+    
+    @Test
+    public void everyInstanceIsSolvedInOrder() throws IOException, InterruptedException, ExecutionException
+    {
+        MKPInstanceGenerator generator = new MKPInstanceGenerator(60, 4, 0.5, 8L);
+        MKPBatchRunner runner = new MKPBatchRunner(writeInstances(generator, 5).getAbsolutePath(), null);
+        List<MKPBatchRunner.Result> results = runner.run(d -> block(d.initSolution(), d.saveSolution()), MKPDomain.GREEDY_FILL, 3);
+        
+        assertEquals(5, runner.getInstancesCount());
+        assertEquals(5, results.size());
+        
+        for(int k = 0; k < results.size(); k++)
+        {
+            SolutionBuilderHandler expected = new SolutionBuilderHandler(generator.generate(k));
+            expected.fillGreedily();
+            
+            assertEquals(k, results.get(k).getInstanceNumber());
+            assertTrue(results.get(k).getBestSolution().isFeasible());
+            assertEquals(expected.getTotalProfit(), results.get(k).getProfit());
+        }
+    }
+    
+    @Test
+    public void emptyFileGivesNoResults() throws IOException, InterruptedException, ExecutionException
+    {
+        File file = tempFile();
+        
+        try(OutputStream output = new FileOutputStream(file))
+        {
+            output.write("0\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        
+        MKPBatchRunner runner = new MKPBatchRunner(file.getAbsolutePath(), null);
+        
+        assertEquals(0, runner.getInstancesCount());
+        assertTrue(runner.run(d -> block(d.initSolution(), d.saveSolution()), MKPDomain.GREEDY_FILL, 2).isEmpty());
+    }
+}
@@ -0,0 +1,128 @@
+package hmod.domains.mkp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPCheckpointTest
+{
+    private static MKPSolution fillInOrder(MKPProblemInstance instance)
+    {
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(instance);
+        
+        for(int i = 0; i < instance.getItemsCount(); i++)
+        {
+            Item item = instance.getItem(i);
+            
+            if(builder.isIncludeFeasible(item))
+                builder.includeItem(item);
+        }
+        
+        return builder.build();
+    }
+    
+    @Test
+    public void solutionsSurviveRoundTrip() throws IOException
+    {
+        MKPProblemInstance instance = new MKPInstanceGenerator(130, 6, 0.5, 3L).generate(0);
+        MKPSolution solution = fillInOrder(instance);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MKPCheckpoint.write(output, instance, Arrays.asList(solution, solution));
+        
+        List<MKPSolution> read = MKPCheckpoint.read(new ByteArrayInputStream(output.toByteArray()), instance);
+        assertEquals(2, read.size());
+        
+        for(MKPSolution copy : read)
+        {
+            assertTrue(copy.sameAs(solution));
+            assertEquals(solution.getTotalProfit(), copy.getTotalProfit());
+            assertArrayEquals(solution.getResourceUsage(), copy.getResourceUsage());
+            assertEquals(solution.isFeasible(), copy.isFeasible());
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void checkpointOfOtherInstanceIsRejected() throws IOException
+    {
+        MKPInstanceGenerator generator = new MKPInstanceGenerator(130, 6, 0.5, 3L);
+        MKPProblemInstance instance = generator.generate(0);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MKPCheckpoint.write(output, instance, Arrays.asList(fillInOrder(instance)));
+        
+        MKPCheckpoint.read(new ByteArrayInputStream(output.toByteArray()), generator.generate(1));
+    }
+    
+    private static void assertRejected(byte[] bytes, MKPProblemInstance instance)
+    {
+        try
+        {
+            MKPCheckpoint.read(new ByteArrayInputStream(bytes), instance);
+            fail("Corrupt checkpoint accepted");
+        }
+        catch(IOException ex)
+        {
+        }
+    }
+    
+    @Test
+    public void storedUsageAndFeasibilityAreRevalidated() throws IOException
+    {
+        MKPProblemInstance instance = new MKPInstanceGenerator(130, 6, 0.5, 3L).generate(0);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MKPCheckpoint.write(output, instance, Arrays.asList(fillInOrder(instance)));
+        byte[] wrongUsage = output.toByteArray();
+        wrongUsage[MKPCheckpoint.HEADER_SIZE + 11]--;
+        assertRejected(wrongUsage, instance);
+        
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(instance);
+        
+        for(int i = 0; i < instance.getItemsCount(); i++)
+            builder.includeItem(instance.getItem(i));
+        
+        output.reset();
+        MKPCheckpoint.write(output, instance, Arrays.asList(builder.build()));
+        byte[] markedFeasible = output.toByteArray();
+        
+        for(int b = 4; b < 8; b++)
+            markedFeasible[MKPCheckpoint.HEADER_SIZE + b] = 0;
+        
+        assertRejected(markedFeasible, instance);
+    }
+    
+    @Test
+    public void resumedCheckpointIsNeverDowngraded() throws IOException
+    {
+        MKPProblemInstance instance = new MKPInstanceGenerator(130, 6, 0.5, 3L).generate(0);
+        ProblemInstanceHandler pih = new ProblemInstanceHandler(instance, -1.0);
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(pih);
+        builder.fillGreedily();
+        MKPSolution best = builder.build();
+        
+        File file = File.createTempFile("mkp-checkpoint-", ".bin");
+        file.deleteOnExit();
+        MKPCheckpoint.write(file, pih, Arrays.asList(best));
+        
+        MutableSolutionHandler sh = new MutableSolutionHandler();
+        MKPCheckpointWriter writer = MKPDomain.resumeFromCheckpoint(file, pih, sh, 5);
+        assertTrue(sh.isSolutionProvided());
+        assertEquals(best.getTotalProfit(), sh.getBestSolutionTracker().getBestProfit());
+        
+        builder.clear();
+        builder.includeItem(pih.getItem(0));
+        sh.setSolutionForRetrieving(builder.build());
+        writer.close();
+        
+        List<MKPSolution> saved = MKPCheckpoint.read(file, pih);
+        assertTrue(saved.get(0).sameAs(best));
+        assertEquals(best.getTotalProfit(), sh.getBestSolution().getTotalProfit());
+    }
+}
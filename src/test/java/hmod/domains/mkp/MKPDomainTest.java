@@ -0,0 +1,121 @@
+package hmod.domains.mkp;
+
+import hmod.core.Condition;
+import hmod.core.Statement;
+import static hmod.core.FlowchartFactory.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPDomainTest
+{
+    private static final MKPProblemInstance INSTANCE = new MKPInstanceGenerator(10, 2, 0.5, 1L).generate(0);
+    
+    private static MKPSolution withProfit(int profit, int violation)
+    {
+        return new DefaultMKPSolution(INSTANCE, profit, violation, new int[0], new int[INSTANCE.getResourcesCount()], 0L);
+    }
+    
+    private static boolean holds(Condition condition)
+    {
+        boolean[] result = new boolean[1];
+        run(If(condition).then(() -> result[0] = true));
+        
+        return result[0];
+    }
+    
+    @Test
+    public void targetIsNeverReachedWithoutLPOptimum()
+    {
+        MutableSolutionHandler sh = new MutableSolutionHandler();
+        MKPDomain domain = MKPDomain.create(new ProblemInstanceHandler(INSTANCE, -1.0), sh, MKPDomain.GREEDY_FILL);
+        Condition target = domain.targetReached(0.5);
+        
+        assertFalse(holds(target));
+        sh.getBestSolutionTracker().offer(withProfit(Integer.MAX_VALUE, 0));
+        assertFalse(holds(target));
+    }
+    
+    @Test
+    public void infeasibleIncumbentDoesNotReachTheTarget()
+    {
+        MutableSolutionHandler sh = new MutableSolutionHandler();
+        MKPDomain domain = MKPDomain.create(new ProblemInstanceHandler(INSTANCE, 1000.5), sh, MKPDomain.GREEDY_FILL);
+        Condition target = domain.targetReached(0.0);
+        
+        sh.getBestSolutionTracker().offer(withProfit(1000, 1));
+        assertFalse(holds(target));
+        assertFalse(sh.getBestSolutionTracker().isProfitReached(1000));
+    }
+    
+    @Test
+    public void feasibleIncumbentReachesTheTargetAtTheGap()
+    {
+        double epsilonGap = 0.05;
+        ProblemInstanceHandler pih = new ProblemInstanceHandler(INSTANCE, 1000.9);
+        MutableSolutionHandler sh = new MutableSolutionHandler();
+        MKPDomain domain = MKPDomain.create(pih, sh, MKPDomain.GREEDY_FILL);
+        Condition target = domain.targetReached(epsilonGap);
+        int targetProfit = (int)Math.ceil(pih.getIntegralBound() * (1.0 - epsilonGap));
+        
+        assertEquals(1000, pih.getIntegralBound());
+        sh.getBestSolutionTracker().offer(withProfit(targetProfit - 1, 0));
+        assertFalse(holds(target));
+        sh.getBestSolutionTracker().offer(withProfit(targetProfit, 0));
+        assertTrue(holds(target));
+    }
+    
+    private static void assertFeasibleFor(DynamicProblemInstance instance, MKPSolution solution)
+    {
+        long[] usage = new long[instance.getResourcesCount()];
+        
+        for(int id : solution.getItemIds())
+        {
+            assertFalse(instance.isRetired(id));
+            
+            for(int i = 0; i < usage.length; i++)
+                usage[i] += instance.getWeight(id, i);
+        }
+        
+        for(int i = 0; i < usage.length; i++)
+            assertTrue(usage[i] <= instance.getResource(i).getCapacity());
+    }
+    
+    @Test
+    public void fillsFollowTheChangesOfDynamicInstances()
+    {
+        DynamicProblemInstance instance = new DynamicProblemInstance(new MKPInstanceGenerator(60, 4, 0.5, 3L).generate(0));
+        ProblemInstanceHandler pih = new ProblemInstanceHandler(instance, -1.0);
+        MutableSolutionHandler sh = new MutableSolutionHandler();
+        MKPDomain domain = MKPDomain.create(pih, sh, MKPDomain.GREEDY_FILL);
+        Statement alns = domain.adaptiveLNS(200, 0);
+        
+        run(domain.initSolution(), domain.saveSolution());
+        int[] previousIds = sh.retrieveSolution().getItemIds();
+        
+        for(int k = 0; k < previousIds.length; k += 2)
+            instance.retireItem(previousIds[k]);
+        
+        instance.updateCapacity(0, instance.getResource(0).getCapacity() / 2);
+        Item added = instance.addItem(1000000, new int[] { 1, 1, 1, 1 });
+        
+        // The long-lived builder takes the current data, and gives the same 
+        // fill as a new one
+        run(domain.initSolution(), domain.saveSolution());
+        MKPSolution filled = sh.retrieveSolution();
+        SolutionBuilderHandler fresh = new SolutionBuilderHandler(pih);
+        fresh.fillGreedily();
+        
+        assertFeasibleFor(instance, filled);
+        assertTrue(filled.hasItem(added.getId()));
+        assertEquals(fresh.getHash(), filled.getHash());
+        
+        run(domain.initSolution(), alns, domain.saveSolution());
+        MKPSolution searched = sh.retrieveSolution();
+        assertFeasibleFor(instance, searched);
+        assertTrue(searched.getTotalProfit() >= filled.getTotalProfit());
+    }
+}
@@ -0,0 +1,139 @@
+package hmod.domains.mkp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPGeneticAlgorithmTest
+{
+    private static final MKPProblemInstance INSTANCE = new MKPInstanceGenerator(150, 8, 0.25, 12L).generate(0);
+    
+    private static void assertFeasible(MKPSolution solution)
+    {
+        assertFeasible(INSTANCE, solution);
+    }
+    
+    private static void assertFeasible(MKPProblemInstance instance, MKPSolution solution)
+    {
+        IndexedWeights weights = IndexedWeights.of(instance);
+        int[] ids = solution.getItemIds();
+        int profit = 0;
+        
+        assertTrue(solution.isFeasible());
+        
+        for(int k = 0; k < ids.length; k++)
+            profit += instance.getProfit(ids[k]);
+        
+        assertEquals(profit, solution.getTotalProfit());
+        
+        for(int i = 0; i < instance.getResourcesCount(); i++)
+        {
+            long usage = 0;
+            
+            for(int k = 0; k < ids.length; k++)
+                usage += weights.getWeight(ids[k], i);
+            
+            assertEquals(usage, solution.getResourceUsage()[i]);
+            assertTrue(usage <= instance.getResource(i).getCapacity());
+        }
+    }
+    
+    @Test
+    public void offeredSolutionsAreFeasibleAndImproving() throws InterruptedException
+    {
+        BestSolutionTracker tracker = new BestSolutionTracker();
+        List<MKPSolution> offered = new ArrayList<>();
+        tracker.addListener((solution, timestamp) -> offered.add(solution));
+        
+        MKPSolution best = new MKPGeneticAlgorithm(INSTANCE, 30, 2).run(3000, 0, 5L, tracker);
+        assertFeasible(best);
+        assertFalse(offered.isEmpty());
+        
+        for(int k = 0; k < offered.size(); k++)
+        {
+            assertFeasible(offered.get(k));
+            
+            if(k > 0)
+                assertTrue(offered.get(k).getTotalProfit() > offered.get(k - 1).getTotalProfit());
+        }
+        
+        assertEquals(best.getTotalProfit(), offered.get(offered.size() - 1).getTotalProfit());
+    }
+    
+    @Test
+    public void sameSeedAndThreadsGiveTheSameResult() throws InterruptedException
+    {
+        for(int threads : new int[] { 1, 4 })
+        {
+            MKPSolution first = new MKPGeneticAlgorithm(INSTANCE, 30, threads).run(2000, 0, 9L, null);
+            
+            for(int run = 0; run < 3; run++)
+            {
+                MKPSolution again = new MKPGeneticAlgorithm(INSTANCE, 30, threads).run(2000, 0, 9L, null);
+                assertEquals(first.getTotalProfit(), again.getTotalProfit());
+                assertTrue(first.sameAs(again));
+            }
+        }
+    }
+    
+    @Test
+    public void sparseInstancesGiveTheSameResultAsDenseOnes() throws InterruptedException
+    {
+        int itemsCount = INSTANCE.getItemsCount();
+        int resourcesCount = INSTANCE.getResourcesCount();
+        IndexedWeights weights = IndexedWeights.of(INSTANCE);
+        int[] profits = new int[itemsCount];
+        int[] capacities = new int[resourcesCount];
+        int[] dense = new int[itemsCount * resourcesCount];
+        
+        for(int j = 0; j < itemsCount; j++)
+        {
+            profits[j] = INSTANCE.getProfit(j);
+            
+            // Zeroes a third of the weights, so the rows are actually sparse
+            for(int i = 0; i < resourcesCount; i++)
+                dense[j * resourcesCount + i] = (i + j) % 3 == 0 ? 0 : weights.getWeight(j, i);
+        }
+        
+        for(int i = 0; i < resourcesCount; i++)
+            capacities[i] = INSTANCE.getResource(i).getCapacity();
+        
+        MKPProblemInstance denseInstance = new DenseProblemInstance(0, profits, capacities, dense);
+        MKPProblemInstance sparseInstance = SparseProblemInstance.fromDense(0, profits, capacities, dense);
+        MKPSolution fromDense = new MKPGeneticAlgorithm(denseInstance, 30, 1).run(2000, 0, 9L, null);
+        MKPSolution fromSparse = new MKPGeneticAlgorithm(sparseInstance, 30, 1).run(2000, 0, 9L, null);
+        
+        assertFeasible(sparseInstance, fromSparse);
+        assertEquals(fromDense.getTotalProfit(), fromSparse.getTotalProfit());
+        assertArrayEquals(fromDense.getItemIds(), fromSparse.getItemIds());
+    }
+    
+    @Test
+    public void retiredItemsAreNeverIncluded() throws InterruptedException
+    {
+        DynamicProblemInstance dynamic = new DynamicProblemInstance(INSTANCE);
+        
+        // The most profitable items would be in any good solution
+        Integer[] byProfit = new Integer[dynamic.getItemsCount()];
+        
+        for(int j = 0; j < byProfit.length; j++)
+            byProfit[j] = j;
+        
+        Arrays.sort(byProfit, (a, b) -> Integer.compare(dynamic.getProfit(b), dynamic.getProfit(a)));
+        
+        for(int k = 0; k < 30; k++)
+            dynamic.retireItem(byProfit[k]);
+        
+        MKPSolution best = new MKPGeneticAlgorithm(dynamic, 30, 2).run(3000, 0, 5L, null);
+        assertFeasible(dynamic, best);
+        
+        for(int id : best.getItemIds())
+            assertFalse("Retired item " + id, dynamic.isRetired(id));
+    }
+}
@@ -0,0 +1,135 @@
+package hmod.domains.mkp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPInstanceGeneratorTest
+{
+    private static void assertSameInstance(MKPProblemInstance expected, MKPProblemInstance actual)
+    {
+        assertEquals(expected.getItemsCount(), actual.getItemsCount());
+        assertEquals(expected.getResourcesCount(), actual.getResourcesCount());
+        
+        for(int i = 0; i < expected.getResourcesCount(); i++)
+            assertEquals(expected.getResource(i).getCapacity(), actual.getResource(i).getCapacity());
+        
+        for(int j = 0; j < expected.getItemsCount(); j++)
+        {
+            assertEquals(expected.getItem(j).getProfit(), actual.getItem(j).getProfit());
+            
+            for(int i = 0; i < expected.getResourcesCount(); i++)
+            {
+                assertEquals(
+                    expected.getWeight(expected.getItem(j), expected.getResource(i)), 
+                    actual.getWeight(actual.getItem(j), actual.getResource(i))
+                );
+            }
+        }
+    }
+    
+    @Test
+    public void textOutputMatchesGeneratedInstances() throws IOException
+    {
+        MKPInstanceGenerator generator = new MKPInstanceGenerator(57, 7, 0.25, 42L);
+        File file = File.createTempFile("mkp-gen-", ".txt");
+        file.deleteOnExit();
+        
+        try(OutputStream output = new FileOutputStream(file))
+        {
+            generator.writeText(output, 3);
+        }
+        
+        MKPProblemInstance[] parsed = new MKPParser().parse(file.getAbsolutePath());
+        assertEquals(3, parsed.length);
+        
+        for(int k = 0; k < parsed.length; k++)
+            assertSameInstance(generator.generate(k), parsed[k]);
+    }
+    
+    @Test
+    public void binaryOutputCanBeMappedOffHeap() throws IOException
+    {
+        MKPInstanceGenerator generator = new MKPInstanceGenerator(70, 6, 0.5, 13L);
+        File file = File.createTempFile("mkp-gen-", ".bin");
+        file.deleteOnExit();
+        
+        try(OutputStream output = new FileOutputStream(file))
+        {
+            generator.writeBinary(output, 3);
+        }
+        
+        assertTrue(OffHeapProblemInstance.isBinaryFile(file.toPath()));
+        
+        for(int k = 0; k < 3; k++)
+        {
+            MKPProblemInstance expected = generator.generate(k);
+            MKPProblemInstance mapped = OffHeapProblemInstance.map(file.toPath(), k);
+            assertSameInstance(expected, mapped);
+            assertSameInstance(expected, OffHeapProblemInstance.copyOf(expected));
+            assertEquals(expected.getFingerprint(), mapped.getFingerprint());
+            
+            SolutionBuilderHandler expectedBuilder = new SolutionBuilderHandler(expected);
+            SolutionBuilderHandler mappedBuilder = new SolutionBuilderHandler(mapped);
+            expectedBuilder.fillGreedily();
+            mappedBuilder.fillGreedily();
+            assertEquals(expectedBuilder.getHash(), mappedBuilder.getHash());
+        }
+    }
+    
+    @Test
+    public void binaryOutputHasExpectedLayout() throws IOException
+    {
+        MKPInstanceGenerator generator = new MKPInstanceGenerator(20, 3, 0.5, 7L);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        generator.writeBinary(output, 1);
+        
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        MKPProblemInstance expected = generator.generate(0);
+        assertEquals(MKPInstanceGenerator.BINARY_MAGIC, input.readInt());
+        assertEquals(1, input.readInt());
+        assertEquals(20, input.readInt());
+        assertEquals(3, input.readInt());
+        
+        for(int j = 0; j < 20; j++)
+            assertEquals(expected.getItem(j).getProfit(), input.readInt());
+        
+        for(int i = 0; i < 3; i++)
+        {
+            for(int j = 0; j < 20; j++)
+                assertEquals(expected.getWeight(expected.getItem(j), expected.getResource(i)), input.readInt());
+        }
+        
+        for(int i = 0; i < 3; i++)
+            assertEquals(expected.getResource(i).getCapacity(), input.readInt());
+        
+        assertEquals(-1, input.read());
+    }
+    
+    @Test
+    public void capacitiesFollowTightnessRatio()
+    {
+        MKPProblemInstance instance = new MKPInstanceGenerator(100, 5, 0.75, 1L).generate(0);
+        
+        for(int i = 0; i < instance.getResourcesCount(); i++)
+        {
+            Resource res = instance.getResource(i);
+            long sum = 0;
+            
+            for(int j = 0; j < instance.getItemsCount(); j++)
+                sum += instance.getWeight(instance.getItem(j), res);
+            
+            assertEquals((int)(0.75 * sum), res.getCapacity());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package hmod.domains.mkp;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Runs several island processes on the loopback.
+ * 
+ * @author Enrique Urra C.
+ */
+public class MKPIslandTest
+{
+    private static final int ISLANDS = 3;
+    
+    private static int freePort() throws IOException
+    {
+        try(ServerSocket socket = new ServerSocket(0))
+        {
+            return socket.getLocalPort();
+        }
+    }
+    
+    @Test
+    public void islandProcessesExchangeSolutions() throws IOException, InterruptedException
+    {
+        File file = File.createTempFile("mkp-island-", ".txt");
+        file.deleteOnExit();
+        
+        try(OutputStream output = new FileOutputStream(file))
+        {
+            new MKPInstanceGenerator(250, 10, 0.5, 17L).writeText(output, 1);
+        }
+        
+        int[] ports = new int[ISLANDS];
+        
+        for(int i = 0; i < ISLANDS; i++)
+            ports[i] = freePort();
+        
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>(ISLANDS);
+        
+        for(int i = 0; i < ISLANDS; i++)
+        {
+            StringBuilder peers = new StringBuilder();
+            
+            for(int j = 0; j < ISLANDS; j++)
+            {
+                if(j != i)
+                    peers.append(peers.length() > 0 ? "," : "").append("127.0.0.1:").append(ports[j]);
+            }
+            
+            processes.add(new ProcessBuilder(Arrays.asList(
+                java, "-cp", System.getProperty("java.class.path"), MKPIsland.class.getName(),
+                file.getAbsolutePath() + ":0", String.valueOf(ports[i]), peers.toString(), "2", "127.0.0.1"
+            )).redirectErrorStream(true).start());
+        }
+        
+        for(Process process : processes)
+        {
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+            
+            String last = null;
+            
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+            {
+                for(String line = reader.readLine(); line != null; line = reader.readLine())
+                    last = line;
+            }
+            
+            assertEquals("Output: " + last, 0, process.exitValue());
+            assertTrue("Output: " + last, last.startsWith("best="));
+            
+            int received = Integer.parseInt(last.substring(last.indexOf("received=") + 9));
+            assertTrue("Output: " + last, received > 0);
+        }
+    }
+    
+    private static InetSocketAddress loopback(int port)
+    {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+    
+    @Test
+    public void closeDoesNotWaitForBlockedSends() throws IOException, InterruptedException
+    {
+        MKPProblemInstance instance = new MKPInstanceGenerator(200000, 1, 0.5, 5L).generate(0);
+        BestSolutionTracker tracker = new BestSolutionTracker();
+        
+        try(ServerSocket silentPeer = new ServerSocket())
+        {
+            silentPeer.setReceiveBufferSize(4096);
+            silentPeer.bind(loopback(0));
+            MKPIsland island = new MKPIsland(instance, tracker, loopback(0), Collections.singletonList(loopback(silentPeer.getLocalPort())), 60000);
+            
+            Thread sender = new Thread(() -> {
+                for(int profit = 1; !Thread.currentThread().isInterrupted(); profit++)
+                {
+                    tracker.offer(new DefaultMKPSolution(instance, profit, 0, new int[0], new int[1], 0L));
+                    island.flush();
+                }
+            });
+            
+            sender.setDaemon(true);
+            sender.start();
+            
+            // Waits until the sends stop progressing, as the peer never reads
+            for(int last = -1; last != island.getSentCount(); Thread.sleep(500))
+                last = island.getSentCount();
+            
+            Thread closer = new Thread(island::close);
+            closer.setDaemon(true);
+            closer.start();
+            closer.join(10000);
+            assertFalse("close() is blocked by a pending send", closer.isAlive());
+            sender.interrupt();
+        }
+    }
+    
+    @Test
+    public void infeasibleImmigrantsAreRejected() throws IOException, InterruptedException
+    {
+        MKPProblemInstance instance = new MKPInstanceGenerator(100, 5, 0.5, 5L).generate(0);
+        BestSolutionTracker tracker = new BestSolutionTracker();
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(instance);
+        
+        for(int i = 0; i < instance.getItemsCount(); i++)
+            builder.includeItem(instance.getItem(i));
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MKPCheckpoint.write(bytes, instance, Collections.singletonList(builder.build()));
+        
+        try(MKPIsland island = new MKPIsland(instance, tracker, loopback(0), Collections.emptyList(), 60000);
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), island.getPort()))
+        {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeInt(bytes.size());
+            output.write(bytes.toByteArray());
+            output.flush();
+            
+            // The island drops the connection on a rejected message
+            assertEquals(-1, socket.getInputStream().read());
+            assertEquals(0, island.getReceivedCount());
+            assertFalse(tracker.isBestSolutionSet());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package hmod.domains.mkp;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPMetricsTest
+{
+    @Test
+    public void everyCallIsCountedAndOneOfEachPeriodIsTimed() throws InterruptedException
+    {
+        MKPMetrics metrics = new MKPMetrics();
+        
+        // INCLUDE samples one out of 64 calls: the 1st, the 65th and the 129th
+        for(int i = 0; i < 130; i++)
+            metrics.end(MKPMetrics.Operation.INCLUDE, metrics.begin(MKPMetrics.Operation.INCLUDE));
+        
+        assertEquals(130, metrics.getCount(MKPMetrics.Operation.INCLUDE));
+        assertEquals(3, metrics.getSampledCount(MKPMetrics.Operation.INCLUDE));
+        assertEquals(0, metrics.getCount(MKPMetrics.Operation.EXCLUDE));
+        
+        // BUILD times every call
+        for(int i = 0; i < 3; i++)
+        {
+            long start = metrics.begin(MKPMetrics.Operation.BUILD);
+            assertNotEquals(MKPMetrics.NOT_SAMPLED, start);
+            Thread.sleep(5);
+            metrics.end(MKPMetrics.Operation.BUILD, start);
+        }
+        
+        assertEquals(3, metrics.getSampledCount(MKPMetrics.Operation.BUILD));
+        assertTrue(metrics.getMeanNanos(MKPMetrics.Operation.BUILD) >= 5e6);
+        assertTrue(metrics.getEstimatedTotalMillis(MKPMetrics.Operation.BUILD) >= 15.0);
+        
+        metrics.reset();
+        assertEquals(0, metrics.getCount(MKPMetrics.Operation.INCLUDE));
+        assertEquals(0.0, metrics.getMeanNanos(MKPMetrics.Operation.BUILD), 0.0);
+    }
+    
+    @Test
+    public void concurrentCountsAreExact() throws InterruptedException
+    {
+        MKPMetrics metrics = new MKPMetrics();
+        List<Thread> workers = new ArrayList<>();
+        
+        for(int t = 0; t < 4; t++)
+        {
+            Thread worker = new Thread(() -> {
+                for(int i = 0; i < 10000; i++)
+                    metrics.end(MKPMetrics.Operation.FEASIBILITY_CHECK, metrics.begin(MKPMetrics.Operation.FEASIBILITY_CHECK));
+            });
+            
+            workers.add(worker);
+            worker.start();
+        }
+        
+        for(Thread worker : workers)
+            worker.join();
+        
+        // The sampling ticks are racy, but every call is counted
+        assertEquals(40000, metrics.getCount(MKPMetrics.Operation.FEASIBILITY_CHECK));
+        assertTrue(metrics.getSampledCount(MKPMetrics.Operation.FEASIBILITY_CHECK) > 0);
+    }
+}
@@ -0,0 +1,163 @@
+package hmod.domains.mkp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPParserTest
+{
+    private static final MKPInstanceGenerator GENERATOR = new MKPInstanceGenerator(45, 5, 0.5, 21L);
+    
+    private static byte[] text(int instancesCount, boolean gzip) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        
+        try(OutputStream output = gzip ? new GZIPOutputStream(bytes) : bytes)
+        {
+            GENERATOR.writeText(output, instancesCount);
+        }
+        
+        return bytes.toByteArray();
+    }
+    
+    @Test
+    public void gzippedStreamsAreDetected() throws IOException
+    {
+        MKPParser parser = new MKPParser();
+        MKPProblemInstance[] all = parser.parse(new ByteArrayInputStream(text(3, true)));
+        MKPProblemInstance single = parser.parse(Channels.newChannel(new ByteArrayInputStream(text(3, true))), 2);
+        
+        assertEquals(3, all.length);
+        
+        for(int k = 0; k < 3; k++)
+            assertEquals(GENERATOR.generate(k).getFingerprint(), all[k].getFingerprint());
+        
+        assertEquals(2, single.getNumber());
+        assertEquals(GENERATOR.generate(2).getFingerprint(), single.getFingerprint());
+    }
+    
+    @Test
+    public void parsingStopsAtTheRequestedInstance() throws IOException
+    {
+        byte[] full = text(3, false);
+        byte[] truncated = Arrays.copyOf(full, full.length / 2);
+        MKPParser parser = new MKPParser();
+        
+        assertEquals(GENERATOR.generate(0).getFingerprint(), parser.parse(new ByteArrayInputStream(truncated), 0).getFingerprint());
+        
+        try
+        {
+            parser.parse(new ByteArrayInputStream(truncated), 2);
+            fail("The truncated instance was parsed");
+        }
+        catch(IOException ex)
+        {
+        }
+    }
+    
+    @Test
+    public void indexedInstancesAreParsedInParallel() throws IOException, InterruptedException
+    {
+        File file = File.createTempFile("mkp-index-", ".txt");
+        File sidecar = new File(file.getPath() + MKPInstanceIndex.SIDECAR_SUFFIX);
+        file.deleteOnExit();
+        sidecar.deleteOnExit();
+        Files.write(file.toPath(), text(4, false));
+        
+        MKPInstanceIndex index = MKPInstanceIndex.load(file.toPath());
+        assertEquals(4, index.getInstancesCount());
+        assertTrue(sidecar.exists());
+        
+        MKPProblemInstance[] all = MKPInstanceIndex.loadSidecar(file.toPath()).parseAll(3);
+        MKPProblemInstance[] some = index.parse(new int[] { 3, 1 }, 2);
+        
+        for(int k = 0; k < 4; k++)
+        {
+            assertEquals(k, all[k].getNumber());
+            assertEquals(GENERATOR.generate(k).getFingerprint(), all[k].getFingerprint());
+        }
+        
+        assertEquals(all[3].getFingerprint(), some[0].getFingerprint());
+        assertEquals(all[1].getFingerprint(), some[1].getFingerprint());
+        
+        Files.write(file.toPath(), new byte[] { '\n' }, StandardOpenOption.APPEND);
+        assertNull(MKPInstanceIndex.loadSidecar(file.toPath()));
+    }
+    
+    @Test
+    public void corruptSidecarsAreRebuilt() throws IOException
+    {
+        File file = File.createTempFile("mkp-index-", ".txt");
+        File sidecar = new File(file.getPath() + MKPInstanceIndex.SIDECAR_SUFFIX);
+        file.deleteOnExit();
+        sidecar.deleteOnExit();
+        Files.write(file.toPath(), text(3, false));
+        MKPInstanceIndex.load(file.toPath());
+        byte[] saved = Files.readAllBytes(sidecar.toPath());
+        
+        Files.write(sidecar.toPath(), Arrays.copyOf(saved, saved.length - 3));
+        assertNull(MKPInstanceIndex.loadSidecar(file.toPath()));
+        assertEquals(3, MKPInstanceIndex.load(file.toPath()).getInstancesCount());
+        assertArrayEquals(saved, Files.readAllBytes(sidecar.toPath()));
+        
+        byte[] wrongMagic = saved.clone();
+        wrongMagic[0] ^= 1;
+        Files.write(sidecar.toPath(), wrongMagic);
+        assertNull(MKPInstanceIndex.loadSidecar(file.toPath()));
+        assertEquals(GENERATOR.generate(2).getFingerprint(), new ProblemInstanceHandler(file.getPath(), 2, null).getFingerprint());
+        assertEquals(3, MKPInstanceIndex.load(file.toPath()).getInstancesCount());
+        assertArrayEquals(saved, Files.readAllBytes(sidecar.toPath()));
+    }
+    
+    @Test
+    public void negativeProfitsAreReportedWithTheirLine()
+    {
+        byte[] bytes = "1\n3 1 0\n5 -2 4\n1 1 1\n10\n".getBytes(StandardCharsets.US_ASCII);
+        
+        try
+        {
+            new MKPParser().parse(new ByteArrayInputStream(bytes), 0);
+            fail("A negative profit was accepted");
+        }
+        catch(IOException ex)
+        {
+            assertEquals("[Line 3] Negative profit for item 1: -2", ex.getMessage());
+        }
+    }
+    
+    @Test
+    public void lpOptimumIsFoundInStreams() throws IOException
+    {
+        String lp = "3\n5.100-00 24585.5\n5.100-01 24538.25 extra\n10.250-00 59312.0\n";
+        byte[] bytes = lp.getBytes(StandardCharsets.US_ASCII);
+        MKPParser parser = new MKPParser();
+        
+        assertEquals(24538.25, parser.findLPOptimum(new ByteArrayInputStream(bytes), 5, 100, 1), 0.0);
+        assertEquals(59312.0, parser.findLPOptimum(new ByteArrayInputStream(bytes), 10, 250, 0), 0.0);
+        assertEquals(-1.0, parser.findLPOptimum(new ByteArrayInputStream(bytes), 5, 250, 0), 0.0);
+        
+        File file = File.createTempFile("mkp-lp-", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), bytes);
+        Map<String, Double> all = parser.readLPOptimums(file.getPath());
+        
+        assertEquals(3, all.size());
+        assertEquals(24538.25, all.get(MKPParser.lpOptimumKey(5, 100, 1)), 0.0);
+        assertEquals(59312.0, all.get(MKPParser.lpOptimumKey(10, 250, 0)), 0.0);
+    }
+}
@@ -0,0 +1,126 @@
+package hmod.domains.mkp;
+
+import static hmod.core.FlowchartFactory.*;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class MKPPortfolioTest
+{
+    private static final MKPProblemInstance INSTANCE = new MKPInstanceGenerator(150, 5, 0.25, 23L).generate(0);
+    
+    private static MKPPortfolio portfolio()
+    {
+        return new MKPPortfolio(new ProblemInstanceHandler(INSTANCE, -1.0))
+            .addMember("greedy-alns", MKPDomain.GREEDY_FILL, d -> block(d.initSolution(), d.adaptiveLNS(Long.MAX_VALUE, 0)))
+            .addMember("random-alns", MKPDomain.RANDOM_FILL, d -> block(d.initSolution(), d.adaptiveLNS(Long.MAX_VALUE, 0)));
+    }
+    
+    @Test
+    public void timeBudgetStopsAllMembers() throws InterruptedException
+    {
+        MKPPortfolio.Result result = portfolio().run(Integer.MAX_VALUE, 300);
+        
+        assertTrue(result.getBestSolution().isFeasible());
+        assertFalse(result.isTargetReached());
+        assertNotNull(result.getWinner());
+        assertTrue(result.getElapsedMillis() < 5000);
+    }
+    
+    @Test
+    public void targetProfitEndsTheRun() throws InterruptedException
+    {
+        MKPPortfolio.Result result = portfolio().run(1, 0);
+        
+        assertTrue(result.isTargetReached());
+        assertTrue(result.getBestSolution().getTotalProfit() >= 1);
+    }
+    
+    private static MKPSolution withProfit(int profit)
+    {
+        return new DefaultMKPSolution(INSTANCE, profit, 0, new int[0], new int[INSTANCE.getResourcesCount()], 0L);
+    }
+    
+    private static MKPPortfolio offering(String name, int first, MKPPortfolio portfolio)
+    {
+        return portfolio.addMember(name, MKPDomain.GREEDY_FILL, d -> () -> {
+            for(int profit = first; profit < 200000; profit += 2)
+                d.getBestSolutionTracker().offer(withProfit(profit));
+        });
+    }
+    
+    @Test
+    public void winnerFoundTheBestSolution() throws InterruptedException
+    {
+        for(int round = 0; round < 20; round++)
+        {
+            MKPPortfolio portfolio = new MKPPortfolio(new ProblemInstanceHandler(INSTANCE, -1.0));
+            MKPPortfolio.Result result = offering("odd", 1, offering("even", 0, portfolio)).run(Integer.MAX_VALUE, 0);
+            
+            assertEquals(result.getBestSolution().getTotalProfit() % 2 == 0 ? "even" : "odd", result.getWinner());
+        }
+    }
+    
+    @Test
+    public void stoppedMembersAreWaitedFor() throws InterruptedException
+    {
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        
+        // The fast member reaches the target only once the slow one runs, 
+        // since members stopped before starting are skipped
+        MKPPortfolio portfolio = new MKPPortfolio(new ProblemInstanceHandler(INSTANCE, -1.0))
+            .addMember("fast", MKPDomain.GREEDY_FILL, d -> () -> {
+                try
+                {
+                    slowStarted.await();
+                }
+                catch(InterruptedException ex)
+                {
+                    return;
+                }
+                
+                d.getBestSolutionTracker().offer(withProfit(10));
+            })
+            .addMember("slow", MKPDomain.GREEDY_FILL, d -> () -> {
+                slowStarted.countDown();
+                long deadline = System.nanoTime() + 300000000L;
+                
+                // Ignores both the stop request and the interruption
+                while(System.nanoTime() < deadline)
+                {
+                    try
+                    {
+                        Thread.sleep(10);
+                    }
+                    catch(InterruptedException ex)
+                    {
+                    }
+                }
+                
+                d.getBestSolutionTracker().offer(withProfit(20));
+            });
+        
+        MKPPortfolio.Result result = portfolio.run(10, 0);
+        
+        assertEquals(20, result.getBestSolution().getTotalProfit());
+        assertEquals("slow", result.getWinner());
+        assertTrue(result.isTargetReached());
+    }
+    
+    @Test
+    public void singleThreadedGeneticAlgorithmIsStopped() throws InterruptedException
+    {
+        MKPPortfolio portfolio = new MKPPortfolio(new ProblemInstanceHandler(INSTANCE, -1.0))
+            .addMember("ga", MKPDomain.GREEDY_FILL, d -> d.geneticAlgorithm(20, Long.MAX_VALUE, 0, 1));
+        
+        MKPPortfolio.Result result = portfolio.run(Integer.MAX_VALUE, 300);
+        
+        assertEquals("ga", result.getWinner());
+        assertTrue(result.getBestSolution().isFeasible());
+        assertTrue("Elapsed " + result.getElapsedMillis(), result.getElapsedMillis() < MKPPortfolio.STOP_GRACE_MILLIS);
+    }
+}
@@ -0,0 +1,328 @@
+package hmod.domains.mkp;
+
+import hmod.core.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import optefx.util.random.RandomTool;
+import static hmod.core.FlowchartFactory.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class SolutionBuilderHandlerTest
+{
+    private static final MKPProblemInstance INSTANCE = new MKPInstanceGenerator(200, 8, 0.25, 11L).generate(0);
+    
+    private static void applyRandomMoves(SolutionBuilderHandler builder, Random random, int count)
+    {
+        for(int i = 0; i < count; i++)
+        {
+            Item item = INSTANCE.getItem(random.nextInt(INSTANCE.getItemsCount()));
+            
+            if(builder.isItemIncluded(item))
+                builder.excludeItem(item);
+            else
+                builder.includeItem(item);
+        }
+    }
+    
+    private static void assertSameState(MKPSolution expected, SolutionBuilderHandler builder)
+    {
+        MKPSolution actual = builder.build();
+        assertTrue(expected.sameAs(actual));
+        assertEquals(expected.getTotalProfit(), actual.getTotalProfit());
+        assertArrayEquals(expected.getResourceUsage(), actual.getResourceUsage());
+        assertEquals(expected.isFeasible(), builder.isFeasible());
+        assertEquals(expected.getHash(), builder.getHash());
+        assertEquals(HashUtils.zobristHash(INSTANCE, actual.getItems()), actual.getHash());
+    }
+    
+    @Test
+    public void feasibilityFollowsViolatedResources()
+    {
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(INSTANCE);
+        assertTrue(builder.isFeasible());
+        
+        for(int i = 0; i < INSTANCE.getItemsCount(); i++)
+            builder.includeItem(INSTANCE.getItem(i));
+        
+        assertFalse(builder.isFeasible());
+        assertEquals(INSTANCE.getResourcesCount(), builder.getViolatedResourcesCount());
+        assertTrue(builder.getCapacityExcess() > 0);
+        assertFalse(builder.build().isFeasible());
+        
+        builder.clear();
+        assertTrue(builder.isFeasible());
+        assertEquals(0, builder.getCapacityExcess());
+    }
+    
+    @Test
+    public void incrementalViolationMatchesRecomputation()
+    {
+        Random random = new Random(17L);
+        IndexedWeights weights = IndexedWeights.of(INSTANCE);
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(INSTANCE);
+        int maxProfit = 0;
+        
+        for(int j = 0; j < INSTANCE.getItemsCount(); j++)
+            maxProfit = Math.max(maxProfit, INSTANCE.getProfit(j));
+        
+        for(int round = 0; round < 30; round++)
+        {
+            applyRandomMoves(builder, random, 1 + random.nextInt(60));
+            int[] ids = builder.getIncludedIds();
+            int rawProfit = 0;
+            int violated = 0;
+            long excess = 0;
+            
+            for(int k = 0; k < ids.length; k++)
+                rawProfit += INSTANCE.getProfit(ids[k]);
+            
+            for(int i = 0; i < INSTANCE.getResourcesCount(); i++)
+            {
+                long usage = 0;
+                
+                for(int k = 0; k < ids.length; k++)
+                    usage += weights.getWeight(ids[k], i);
+                
+                long capacity = INSTANCE.getResource(i).getCapacity();
+                
+                if(usage > capacity)
+                {
+                    violated++;
+                    excess += usage - capacity;
+                }
+            }
+            
+            assertEquals(violated, builder.getViolatedResourcesCount());
+            assertEquals(excess, builder.getCapacityExcess());
+            assertEquals(violated == 0, builder.isFeasible());
+            
+            builder.setProportionalPenalty(false);
+            assertEquals(rawProfit - violated * ids.length * (maxProfit + 1), builder.build().getTotalProfit());
+            
+            builder.setProportionalPenalty(true);
+            assertEquals(rawProfit - (int)Math.min(Integer.MAX_VALUE, excess), builder.build().getTotalProfit());
+        }
+    }
+    
+    @Test
+    public void rollbackRestoresMarkedStates()
+    {
+        Random random = new Random(5L);
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(INSTANCE);
+        applyRandomMoves(builder, random, 100);
+        
+        MKPSolution first = builder.build();
+        int firstMark = builder.mark();
+        applyRandomMoves(builder, random, 50);
+        
+        MKPSolution second = builder.build();
+        int secondMark = builder.mark();
+        applyRandomMoves(builder, random, 50);
+        
+        builder.rollback(secondMark);
+        assertSameState(second, builder);
+        
+        applyRandomMoves(builder, random, 20);
+        builder.rollback(firstMark);
+        assertSameState(first, builder);
+        assertEquals(firstMark, builder.getJournalSize());
+    }
+    
+    @Test
+    public void solutionsKeepIdsAndCanonicalItems()
+    {
+        Random random = new Random(3L);
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(INSTANCE);
+        applyRandomMoves(builder, random, 60);
+        
+        MKPSolution solution = builder.build();
+        Item[] items = solution.getItems();
+        int[] ids = solution.getItemIds();
+        assertEquals(builder.getIncludedCount(), ids.length);
+        
+        for(int i = 0; i < ids.length; i++)
+        {
+            assertTrue(items[i] == INSTANCE.getItem(ids[i]));
+            assertTrue(solution.hasItem(ids[i]));
+            assertTrue(builder.isItemIncluded(items[i]));
+        }
+        
+        assertFalse(solution.hasItem(-1));
+        assertFalse(solution.hasItem(INSTANCE.getItemsCount()));
+        assertFalse(INSTANCE.itemExists(new Item(0, INSTANCE.getItem(0).getProfit())));
+    }
+    
+    @Test
+    public void randomFillsFollowTheSameDistribution()
+    {
+        MKPProblemInstance small = new MKPInstanceGenerator(8, 2, 0.5, 4L).generate(0);
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(small);
+        Map<Long, int[]> frequencies = new HashMap<>();
+        int runs = 20000;
+        
+        for(int r = 0; r < 2 * runs; r++)
+        {
+            boolean ordered = r % 2 == 0;
+            builder.clear();
+            
+            if(ordered)
+                builder.fillRandomlyInOrder();
+            else
+                builder.fillRandomly();
+            
+            for(int i = 0; i < small.getItemsCount(); i++)
+            {
+                if(!builder.isItemIncluded(small.getItem(i)))
+                    assertFalse(builder.isIncludeFeasible(small.getItem(i)));
+            }
+            
+            frequencies.computeIfAbsent(builder.getHash(), h -> new int[2])[ordered ? 0 : 1]++;
+        }
+        
+        assertTrue(frequencies.size() > 1);
+        
+        for(int[] counts : frequencies.values())
+            assertEquals((double)counts[0] / runs, (double)counts[1] / runs, 0.025);
+    }
+    
+    private static MKPSolution fillFrom(MKPDomain domain, MutableSolutionHandler sh, MKPSolution partial, Statement fill, long seed)
+    {
+        sh.provideSolution(partial);
+        run(domain.loadSolution());
+        RandomTool.setSeed(seed);
+        run(block(fill, domain.saveSolution()));
+        
+        return sh.retrieveSolution();
+    }
+    
+    @Test
+    public void fusedFillsMatchTheFlowchartVersions()
+    {
+        for(int k = 0; k < 20; k++)
+        {
+            MKPProblemInstance instance = new MKPInstanceGenerator(80 + 10 * k, 2 + k % 6, 0.25 + 0.025 * k, k).generate(0);
+            ProblemInstanceHandler pih = new ProblemInstanceHandler(instance, -1.0);
+            MutableSolutionHandler sh = new MutableSolutionHandler();
+            MKPDomain domain = MKPDomain.create(pih, sh, MKPDomain.GREEDY_FILL);
+            
+            Random random = new Random(k);
+            SolutionBuilderHandler partialBuilder = new SolutionBuilderHandler(pih);
+            
+            for(int j = 0; j < instance.getItemsCount(); j++)
+            {
+                if(random.nextInt(5) == 0 && partialBuilder.isIncludeFeasible(pih.getItem(j)))
+                    partialBuilder.includeItem(pih.getItem(j));
+            }
+            
+            MKPSolution partial = partialBuilder.build();
+            
+            MKPSolution flowchartGreedy = fillFrom(domain, sh, partial, domain.fillMethod(MKPOperators::selectMostProfitableItemInList), k);
+            MKPSolution fusedGreedy = fillFrom(domain, sh, partial, domain.fillMethod(MKPDomain.GREEDY_FILL), k);
+            assertTrue(flowchartGreedy.sameAs(fusedGreedy));
+            assertArrayEquals(flowchartGreedy.getResourceUsage(), fusedGreedy.getResourceUsage());
+            
+            MKPSolution flowchartRandom = fillFrom(domain, sh, partial, domain.fillMethod(MKPOperators::selectRandomItemInList), k);
+            MKPSolution fusedRandom = fillFrom(domain, sh, partial, domain.fillMethod(MKPDomain.ORDERED_RANDOM_FILL), k);
+            assertTrue(flowchartRandom.sameAs(fusedRandom));
+            assertArrayEquals(flowchartRandom.getResourceUsage(), fusedRandom.getResourceUsage());
+        }
+    }
+    
+    @Test
+    public void fusedFillsAreCountedInTheMetrics()
+    {
+        MKPMetrics metrics = new MKPMetrics();
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(INSTANCE);
+        builder.setMetrics(metrics);
+        
+        // As the flowchart fill, one check per available item and one 
+        // include per fitting one
+        builder.fillGreedily();
+        assertEquals(INSTANCE.getItemsCount(), metrics.getCount(MKPMetrics.Operation.FEASIBILITY_CHECK));
+        assertEquals(builder.getIncludedCount(), metrics.getCount(MKPMetrics.Operation.INCLUDE));
+        
+        metrics.reset();
+        builder.clear();
+        builder.fillRandomly();
+        assertTrue(metrics.getCount(MKPMetrics.Operation.FEASIBILITY_CHECK) >= INSTANCE.getItemsCount());
+        assertEquals(builder.getIncludedCount(), metrics.getCount(MKPMetrics.Operation.INCLUDE));
+        
+        metrics.reset();
+        builder.clear();
+        builder.fillRandomlyInOrder();
+        assertEquals(INSTANCE.getItemsCount(), metrics.getCount(MKPMetrics.Operation.FEASIBILITY_CHECK));
+        assertEquals(builder.getIncludedCount(), metrics.getCount(MKPMetrics.Operation.INCLUDE));
+    }
+    
+    @Test
+    public void retiredItemsAreNeverAvailable()
+    {
+        DynamicProblemInstance instance = new DynamicProblemInstance(INSTANCE);
+        
+        for(int i = 0; i < instance.getResourcesCount(); i++)
+            instance.updateCapacity(i, Integer.MAX_VALUE);
+        
+        for(int j = 0; j < instance.getItemsCount(); j += 3)
+            instance.retireItem(j);
+        
+        int live = instance.getLiveItemsCount();
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(instance);
+        assertEquals(live, builder.getAvailableCount());
+        
+        for(Item item : builder.getAvailableItems())
+            assertFalse(instance.isRetired(item.getId()));
+        
+        Runnable[] fills = { builder::fillGreedily, builder::fillRandomly, builder::fillRandomlyInOrder };
+        
+        for(Runnable fill : fills)
+        {
+            // Every resource is unbounded, so each fill takes all the live
+            // items and nothing else
+            builder.clear();
+            fill.run();
+            assertEquals(live, builder.getIncludedCount());
+            assertEquals(0, builder.getAvailableCount());
+            assertEquals(0, builder.getAvailableItems().length);
+            assertFalse(builder.checkIfCanAdd());
+            
+            for(int id : builder.getIncludedIds())
+                assertFalse(instance.isRetired(id));
+            
+            try
+            {
+                fill.run();
+                fail("A fill without available items was accepted");
+            }
+            catch(IllegalStateException ex)
+            {
+            }
+        }
+    }
+    
+    @Test
+    public void forksAreIndependentAndRestorable()
+    {
+        Random random = new Random(9L);
+        SolutionBuilderHandler builder = new SolutionBuilderHandler(INSTANCE);
+        applyRandomMoves(builder, random, 80);
+        
+        MKPSolution original = builder.build();
+        SolutionBuilderHandler fork = builder.fork();
+        assertSameState(original, fork);
+        
+        applyRandomMoves(fork, random, 40);
+        MKPSolution forked = fork.build();
+        assertSameState(original, builder);
+        assertEquals(INSTANCE.getItemsCount(), fork.getIncludedCount() + fork.getAvailableCount());
+        assertEquals(fork.getAvailableCount(), fork.getAvailableItems().length);
+        
+        builder.restore(fork);
+        assertSameState(forked, builder);
+    }
+}
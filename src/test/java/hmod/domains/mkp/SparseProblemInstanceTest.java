@@ -0,0 +1,93 @@
+package hmod.domains.mkp;
+
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Enrique Urra C.
+ */
+public class SparseProblemInstanceTest
+{
+    private static final int ITEMS = 300;
+    private static final int RESOURCES = 40;
+    
+    private static int[] randomWeights(Random random, double density)
+    {
+        int[] weights = new int[ITEMS * RESOURCES];
+        
+        for(int i = 0; i < weights.length; i++)
+            weights[i] = random.nextDouble() < density ? 1 + random.nextInt(100) : 0;
+        
+        return weights;
+    }
+    
+    private static int[] randomValues(Random random, int count, int min, int bound)
+    {
+        int[] values = new int[count];
+        
+        for(int i = 0; i < count; i++)
+            values[i] = min + random.nextInt(bound);
+        
+        return values;
+    }
+    
+    @Test
+    public void layoutFollowsDensity()
+    {
+        Random random = new Random(1L);
+        int[] profits = randomValues(random, ITEMS, 1, 100);
+        int[] capacities = randomValues(random, RESOURCES, 100, 200);
+        
+        assertTrue(ArrayProblemInstance.create(0, profits, capacities, randomWeights(random, 0.05)) instanceof SparseProblemInstance);
+        assertTrue(ArrayProblemInstance.create(0, profits, capacities, randomWeights(random, 0.9)) instanceof DenseProblemInstance);
+    }
+    
+    @Test
+    public void sparseBuilderMatchesDense()
+    {
+        Random random = new Random(2L);
+        int[] profits = randomValues(random, ITEMS, 1, 100);
+        int[] capacities = randomValues(random, RESOURCES, 100, 200);
+        int[] weights = randomWeights(random, 0.05);
+        DenseProblemInstance dense = new DenseProblemInstance(0, profits, capacities, weights);
+        SparseProblemInstance sparse = SparseProblemInstance.fromDense(0, profits, capacities, weights);
+        
+        for(int i = 0; i < ITEMS; i++)
+        {
+            for(int r = 0; r < RESOURCES; r++)
+                assertEquals(dense.getWeight(i, r), sparse.getWeight(sparse.getItem(i), sparse.getResource(r)));
+        }
+        
+        SolutionBuilderHandler denseBuilder = new SolutionBuilderHandler(dense);
+        SolutionBuilderHandler sparseBuilder = new SolutionBuilderHandler(new ProblemInstanceHandler(sparse, -1.0));
+        
+        for(int i = 0; i < 200; i++)
+        {
+            int id = random.nextInt(ITEMS);
+            
+            if(denseBuilder.isItemIncluded(dense.getItem(id)))
+            {
+                denseBuilder.excludeItem(dense.getItem(id));
+                sparseBuilder.excludeItem(sparse.getItem(id));
+            }
+            else
+            {
+                assertEquals(denseBuilder.isIncludeFeasible(dense.getItem(id)), sparseBuilder.isIncludeFeasible(sparse.getItem(id)));
+                denseBuilder.includeItem(dense.getItem(id));
+                sparseBuilder.includeItem(sparse.getItem(id));
+            }
+            
+            assertEquals(denseBuilder.getViolatedResourcesCount(), sparseBuilder.getViolatedResourcesCount());
+            assertEquals(denseBuilder.getCapacityExcess(), sparseBuilder.getCapacityExcess());
+        }
+        
+        denseBuilder.clear();
+        sparseBuilder.clear();
+        denseBuilder.fillGreedily();
+        sparseBuilder.fillGreedily();
+        assertArrayEquals(denseBuilder.build().getResourceUsage(), sparseBuilder.build().getResourceUsage());
+        assertEquals(denseBuilder.getHash(), sparseBuilder.getHash());
+    }
+}